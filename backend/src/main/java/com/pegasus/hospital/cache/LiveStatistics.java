@@ -0,0 +1,235 @@
+package com.pegasus.hospital.cache;
+
+import com.pegasus.hospital.entity.Appointment;
+import com.pegasus.hospital.entity.AppointmentDailyStats;
+import com.pegasus.hospital.mapper.AppointmentDailyStatsMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 实时预约统计（内存）
+ * 
+ * 按 预约日期 × 科室 × 医生 × 状态 保存LongAdder计数器，
+ * 预约、取消、完成在事务提交后更新，管理端读取时只遍历当天的几百个计数器，不执行SQL。
+ * 
+ * 启动时从预约日统计表加载保留期内的数据，夜间压实后重新加载以校正偏差；
+ * 加载期间提交的增量先记录下来，替换计数器时补记到新加载的计数中
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@Component
+public class LiveStatistics {
+    
+    @Autowired
+    private AppointmentDailyStatsMapper statsMapper;
+    
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+    
+    /**
+     * 保留今天往前N天及以后的计数器
+     */
+    @Value("${statistics.live.retention-days:7}")
+    private int retentionDays;
+    
+    private volatile ConcurrentMap<LocalDate, ConcurrentMap<Key, LongAdder>> counters = new ConcurrentHashMap<>();
+    
+    /**
+     * 累加计数时持有读锁，开始加载和替换计数器时持有写锁
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    
+    /**
+     * 加载期间的增量，不加载时为null
+     */
+    private volatile Queue<Delta> pendingDeltas;
+    
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // 数据库不可用时不阻止启动，计数从零开始，夜间压实后校正
+            log.warn("实时统计加载失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 从预约日统计表重新加载保留期内的计数
+     * 
+     * 查询开始后提交的增量不在查询结果中，先记入pendingDeltas，替换计数器时补记；
+     * 查询开始前已提交、但提交回调晚于加载开始的增量会被重复计入，由下一次加载校正
+     */
+    public synchronized void reload() {
+        LocalDate fromDate = LocalDate.now().minusDays(retentionDays);
+        Queue<Delta> pending = new ConcurrentLinkedQueue<>();
+        swapLock.writeLock().lock();
+        try {
+            pendingDeltas = pending;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        
+        List<AppointmentDailyStats> rows;
+        try {
+            rows = statsMapper.selectFrom(fromDate);
+        } catch (RuntimeException e) {
+            // 查询失败时保留旧计数器，加载期间的增量已经累加在旧计数器上
+            pendingDeltas = null;
+            throw e;
+        }
+        ConcurrentMap<LocalDate, ConcurrentMap<Key, LongAdder>> loaded = new ConcurrentHashMap<>();
+        for (AppointmentDailyStats row : rows) {
+            increment(loaded, row.getStatDate(), new Key(row.getDeptId(), row.getDoctorId(), row.getStatus()),
+                    row.getCnt());
+        }
+        
+        int replayed = 0;
+        swapLock.writeLock().lock();
+        try {
+            for (Delta delta : pending) {
+                increment(loaded, delta.date(), delta.key(), delta.delta());
+                replayed++;
+            }
+            counters = loaded;
+            pendingDeltas = null;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        log.info("实时统计已加载，共 {} 天 {} 行，补记加载期间的增量 {} 条", loaded.size(), rows.size(), replayed);
+    }
+    
+    /**
+     * 累加计数（事务提交后调用）
+     */
+    public void add(LocalDate date, Long deptId, String doctorId, String status, long delta) {
+        if (date.isBefore(LocalDate.now().minusDays(retentionDays))) {
+            return;
+        }
+        Key key = new Key(deptId, doctorId, status);
+        swapLock.readLock().lock();
+        try {
+            increment(counters, date, key, delta);
+            Queue<Delta> pending = pendingDeltas;
+            if (pending != null) {
+                pending.add(new Delta(date, key, delta));
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+    
+    private static void increment(ConcurrentMap<LocalDate, ConcurrentMap<Key, LongAdder>> target,
+                                  LocalDate date, Key key, long delta) {
+        target.computeIfAbsent(date, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new LongAdder())
+                .add(delta);
+    }
+    
+    /**
+     * 移除保留期之前的计数器
+     */
+    public void purge() {
+        LocalDate fromDate = LocalDate.now().minusDays(retentionDays);
+        counters.keySet().removeIf(date -> date.isBefore(fromDate));
+    }
+    
+    /**
+     * 指定日期的统计：按状态、按科室、按医生
+     */
+    public Map<String, Object> snapshot(LocalDate date) {
+        Map<Key, LongAdder> day = counters.getOrDefault(date, new ConcurrentHashMap<>());
+        
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        Map<Long, Map<String, Object>> byDept = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> byDoctor = new LinkedHashMap<>();
+        for (Map.Entry<Key, LongAdder> entry : day.entrySet()) {
+            Key key = entry.getKey();
+            long count = entry.getValue().sum();
+            if (count == 0) {
+                continue;
+            }
+            byStatus.merge(key.status(), count, Long::sum);
+            
+            Map<String, Object> dept = byDept.computeIfAbsent(key.deptId(), this::newDeptRow);
+            addCount(dept, key.status(), count);
+            
+            Map<String, Object> doctor = byDoctor.computeIfAbsent(key.doctorId(), id -> newDoctorRow(id, key.deptId()));
+            addCount(doctor, key.status(), count);
+        }
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("date", date);
+        result.put("byStatus", byStatus);
+        result.put("byDepartment", sorted(byDept.values()));
+        result.put("byDoctor", sorted(byDoctor.values()));
+        return result;
+    }
+    
+    private Map<String, Object> newDeptRow(Long deptId) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("deptId", deptId);
+        row.put("deptName", referenceDataCache.getDeptName(deptId));
+        row.put("total", 0L);
+        row.put("counts", new LinkedHashMap<String, Long>());
+        return row;
+    }
+    
+    private Map<String, Object> newDoctorRow(String doctorId, Long deptId) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("doctorId", doctorId);
+        row.put("doctorName", referenceDataCache.getDoctorName(doctorId));
+        row.put("deptName", referenceDataCache.getDeptName(deptId));
+        row.put("total", 0L);
+        row.put("counts", new LinkedHashMap<String, Long>());
+        return row;
+    }
+    
+    /**
+     * 累加到某一行的状态计数，total不含已取消
+     */
+    @SuppressWarnings("unchecked")
+    private static void addCount(Map<String, Object> row, String status, long count) {
+        ((Map<String, Long>) row.get("counts")).merge(status, count, Long::sum);
+        if (!Appointment.STATUS_CANCELLED.equals(status)) {
+            row.put("total", (Long) row.get("total") + count);
+        }
+    }
+    
+    private static List<Map<String, Object>> sorted(Iterable<Map<String, Object>> rows) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        rows.forEach(list::add);
+        list.sort(Comparator.comparingLong((Map<String, Object> row) -> (Long) row.get("total")).reversed());
+        return list;
+    }
+    
+    /**
+     * 计数器键：科室 × 医生 × 状态
+     */
+    private record Key(Long deptId, String doctorId, String status) {
+    }
+    
+    /**
+     * 加载期间记录的增量
+     */
+    private record Delta(LocalDate date, Key key, long delta) {
+    }
+}
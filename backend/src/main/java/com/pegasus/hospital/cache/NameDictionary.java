@@ -0,0 +1,167 @@
+package com.pegasus.hospital.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pegasus.hospital.entity.Appointment;
+import com.pegasus.hospital.entity.Doctor;
+import com.pegasus.hospital.entity.Patient;
+import com.pegasus.hospital.mapper.DoctorMapper;
+import com.pegasus.hospital.mapper.PatientMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 名称字典（ID -> 名称）
+ * 
+ * 预约查询只读取appointment表，患者姓名、医生姓名和科室名称由本字典批量补全，
+ * 不再对每一行关联patient、doctor、department三张表。
+ * 
+ * 在职医生和科室的名称直接取自基础数据缓存（ReferenceDataCache），本类只缓存患者姓名：
+ * 患者按需批量加载并限制缓存容量，注册、修改信息后在事务提交后更新。
+ * 已离职医生不在基础数据快照中，按需批量查询
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Component
+public class NameDictionary {
+    
+    /**
+     * 单条IN查询的最大ID数量
+     */
+    private static final int LOAD_BATCH_SIZE = 1000;
+    
+    @Autowired
+    private PatientMapper patientMapper;
+    
+    @Autowired
+    private DoctorMapper doctorMapper;
+    
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+    
+    @Value("${cache.names.patient-max-size:200000}")
+    private long patientMaxSize;
+    
+    /**
+     * 患者ID -> 患者姓名
+     */
+    private Cache<String, String> patientNames;
+    
+    @PostConstruct
+    public void init() {
+        patientNames = Caffeine.newBuilder()
+                .maximumSize(patientMaxSize)
+                .build();
+    }
+    
+    /**
+     * 批量补全预约记录中的患者姓名、医生姓名和科室名称
+     * 缓存中没有的患者、不在基础数据快照中的医生按批次一次性查询
+     */
+    public void fill(Collection<Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return;
+        }
+        
+        Set<String> patientIds = new HashSet<>();
+        Set<String> missingDoctorIds = new HashSet<>();
+        for (Appointment appt : appointments) {
+            patientIds.add(appt.getPatientId());
+            if (!referenceDataCache.containsDoctor(appt.getDoctorId())) {
+                missingDoctorIds.add(appt.getDoctorId());
+            }
+        }
+        
+        Map<String, String> patients = patientNames.getAll(patientIds, this::loadPatientNames);
+        Map<String, Doctor> missingDoctors = missingDoctorIds.isEmpty()
+                ? Map.of() : loadDoctorNames(missingDoctorIds);
+        
+        for (Appointment appt : appointments) {
+            appt.setPatientName(patients.get(appt.getPatientId()));
+            Doctor doctor = missingDoctors.get(appt.getDoctorId());
+            if (doctor != null) {
+                appt.setDoctorName(doctor.getName());
+                appt.setDeptName(referenceDataCache.getDeptName(doctor.getDeptId()));
+            } else if (referenceDataCache.containsDoctor(appt.getDoctorId())) {
+                appt.setDoctorName(referenceDataCache.getDoctorName(appt.getDoctorId()));
+                appt.setDeptName(referenceDataCache.getDeptName(referenceDataCache.getDoctorDeptId(appt.getDoctorId())));
+            }
+        }
+    }
+    
+    /**
+     * 补全单条预约记录
+     */
+    public Appointment fill(Appointment appointment) {
+        if (appointment != null) {
+            fill(List.of(appointment));
+        }
+        return appointment;
+    }
+    
+    /**
+     * 更新患者姓名（注册、修改信息后）
+     */
+    public void putPatient(Patient patient) {
+        patientNames.put(patient.getPatientId(), patient.getName());
+    }
+    
+    /**
+     * 获取医生当前所属科室ID
+     * 
+     * @return 科室ID，医生不存在或未分配科室时返回null
+     */
+    public Long getDeptId(String doctorId) {
+        if (referenceDataCache.containsDoctor(doctorId)) {
+            return referenceDataCache.getDoctorDeptId(doctorId);
+        }
+        Doctor doctor = loadDoctorNames(Set.of(doctorId)).get(doctorId);
+        return doctor != null ? doctor.getDeptId() : null;
+    }
+    
+    private Map<String, String> loadPatientNames(Set<? extends String> patientIds) {
+        Map<String, String> names = new HashMap<>();
+        for (List<String> batch : partition(patientIds)) {
+            for (Patient patient : patientMapper.selectNamesByPatientIds(batch)) {
+                names.put(patient.getPatientId(), patient.getName());
+            }
+        }
+        return names;
+    }
+    
+    private Map<String, Doctor> loadDoctorNames(Set<String> doctorIds) {
+        Map<String, Doctor> doctors = new HashMap<>();
+        for (List<String> batch : partition(doctorIds)) {
+            for (Doctor doctor : doctorMapper.selectNamesByDoctorIds(batch)) {
+                doctors.put(doctor.getDoctorId(), doctor);
+            }
+        }
+        return doctors;
+    }
+    
+    private static List<List<String>> partition(Collection<? extends String> ids) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>(Math.min(ids.size(), LOAD_BATCH_SIZE));
+        for (String id : ids) {
+            batch.add(id);
+            if (batch.size() == LOAD_BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>(LOAD_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,267 @@
+package com.pegasus.hospital.cache;
+
+import com.pegasus.hospital.entity.Department;
+import com.pegasus.hospital.entity.Doctor;
+import com.pegasus.hospital.mapper.DepartmentMapper;
+import com.pegasus.hospital.mapper.DoctorMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 基础数据缓存（科室、在职医生）
+ * 
+ * 科室和医生每天只变化几次，在内存中保存一份包含科室名称的只读快照，
+ * 科室列表、医生列表、按科室查询医生、医生详情等读接口直接由快照返回，不执行SQL。
+ * 快照内的实体不对外暴露，读接口返回副本；只需要名称时使用getDeptName/getDoctorName，不复制实体。
+ * 
+ * 新增科室、新增/修改/批量导入医生后在事务提交时整体重建并原子替换快照；
+ * 快照超过刷新周期后也会在读取时重建，以便感知其他节点的修改
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@Component
+public class ReferenceDataCache {
+    
+    @Autowired
+    private DepartmentMapper departmentMapper;
+    
+    @Autowired
+    private DoctorMapper doctorMapper;
+    
+    @Value("${cache.reference.refresh-seconds:300}")
+    private long refreshSeconds;
+    
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    
+    @PostConstruct
+    public void init() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // 数据库不可用时不阻止启动，首次读取时重建
+            log.warn("基础数据缓存加载失败，将在首次读取时重建: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 所有科室（副本）
+     */
+    public List<Department> getDepartments() {
+        return current().departments.stream().map(ReferenceDataCache::copy).toList();
+    }
+    
+    /**
+     * 根据ID查询科室（副本）
+     */
+    public Department getDepartment(Long deptId) {
+        return deptId == null ? null : copy(current().departmentById.get(deptId));
+    }
+    
+    /**
+     * 根据ID查询科室名称，不复制实体
+     */
+    public String getDeptName(Long deptId) {
+        Department department = deptId == null ? null : current().departmentById.get(deptId);
+        return department != null ? department.getDeptName() : null;
+    }
+    
+    /**
+     * 所有在职医生（副本，包含科室名称，不含密码）
+     */
+    public List<Doctor> getDoctors() {
+        return current().doctors.stream().map(ReferenceDataCache::copy).toList();
+    }
+    
+    /**
+     * 某科室的在职医生（副本）
+     */
+    public List<Doctor> getDoctorsByDept(Long deptId) {
+        return current().doctorsByDept.getOrDefault(deptId, Collections.emptyList())
+                .stream().map(ReferenceDataCache::copy).toList();
+    }
+    
+    /**
+     * 根据医生ID查询在职医生（副本），不存在或已离职返回null
+     */
+    public Doctor getDoctor(String doctorId) {
+        return copy(current().doctorById.get(doctorId));
+    }
+    
+    /**
+     * 根据医生ID查询在职医生姓名，不复制实体
+     */
+    public String getDoctorName(String doctorId) {
+        Doctor doctor = doctorId == null ? null : current().doctorById.get(doctorId);
+        return doctor != null ? doctor.getName() : null;
+    }
+    
+    /**
+     * 根据医生ID查询在职医生所属科室ID，不复制实体
+     */
+    public Long getDoctorDeptId(String doctorId) {
+        Doctor doctor = doctorId == null ? null : current().doctorById.get(doctorId);
+        return doctor != null ? doctor.getDeptId() : null;
+    }
+    
+    /**
+     * 医生是否在快照中（在职）
+     */
+    public boolean containsDoctor(String doctorId) {
+        return doctorId != null && current().doctorById.containsKey(doctorId);
+    }
+    
+    /**
+     * 在当前事务提交后重建快照
+     * 同一事务内多次调用（如批量导入）只重建一次；没有事务时立即重建
+     */
+    public void refreshAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh();
+            }
+            
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ReferenceDataCache.this);
+            }
+        });
+    }
+    
+    /**
+     * 从数据库重建快照并原子替换
+     */
+    public synchronized void refresh() {
+        List<Department> departments = departmentMapper.selectList(null);
+        List<Doctor> doctors = doctorMapper.selectAllWithDeptName();
+        doctors.forEach(d -> d.setPassword(null));
+        snapshot = new Snapshot(departments, doctors, System.currentTimeMillis());
+    }
+    
+    /**
+     * 缓存状态
+     */
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("departments", current.departments.size());
+        stats.put("doctors", current.doctors.size());
+        stats.put("loadedAt", current.loadedAt > 0
+                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(current.loadedAt), ZoneId.systemDefault())
+                : null);
+        return stats;
+    }
+    
+    /**
+     * 快照中的实体由所有读线程共享，对外只返回副本，调用方修改返回值不会影响快照
+     */
+    private static Department copy(Department department) {
+        if (department == null) {
+            return null;
+        }
+        return Department.builder()
+                .id(department.getId())
+                .deptName(department.getDeptName())
+                .description(department.getDescription())
+                .createdAt(department.getCreatedAt())
+                .updatedAt(department.getUpdatedAt())
+                .build();
+    }
+    
+    private static Doctor copy(Doctor doctor) {
+        if (doctor == null) {
+            return null;
+        }
+        return Doctor.builder()
+                .id(doctor.getId())
+                .doctorId(doctor.getDoctorId())
+                .name(doctor.getName())
+                .deptId(doctor.getDeptId())
+                .specialty(doctor.getSpecialty())
+                .status(doctor.getStatus())
+                .createdAt(doctor.getCreatedAt())
+                .updatedAt(doctor.getUpdatedAt())
+                .deptName(doctor.getDeptName())
+                .build();
+    }
+    
+    /**
+     * 获取当前快照，过期时由一个读线程负责重建，其余线程继续使用旧快照
+     */
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (System.currentTimeMillis() - current.loadedAt > refreshSeconds * 1000
+                && refreshing.compareAndSet(false, true)) {
+            try {
+                refresh();
+            } catch (Exception e) {
+                log.warn("基础数据缓存重建失败: {}", e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+            return snapshot;
+        }
+        return current;
+    }
+    
+    /**
+     * 不可变快照
+     */
+    private static class Snapshot {
+        
+        static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), Collections.emptyList(), 0);
+        
+        final List<Department> departments;
+        
+        final Map<Long, Department> departmentById;
+        
+        final List<Doctor> doctors;
+        
+        final Map<String, Doctor> doctorById;
+        
+        final Map<Long, List<Doctor>> doctorsByDept;
+        
+        final long loadedAt;
+        
+        Snapshot(List<Department> departments, List<Doctor> doctors, long loadedAt) {
+            this.departments = List.copyOf(departments);
+            this.departmentById = departments.stream()
+                    .collect(Collectors.toUnmodifiableMap(Department::getId, d -> d));
+            this.doctors = List.copyOf(doctors);
+            this.doctorById = doctors.stream()
+                    .collect(Collectors.toUnmodifiableMap(Doctor::getDoctorId, d -> d));
+            this.doctorsByDept = doctors.stream()
+                    .filter(d -> d.getDeptId() != null)
+                    .collect(Collectors.collectingAndThen(
+                            Collectors.groupingBy(Doctor::getDeptId, Collectors.toUnmodifiableList()),
+                            Collections::unmodifiableMap));
+            this.loadedAt = loadedAt;
+        }
+    }
+}
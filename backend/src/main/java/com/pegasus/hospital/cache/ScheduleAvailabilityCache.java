@@ -0,0 +1,111 @@
+package com.pegasus.hospital.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pegasus.hospital.entity.Schedule;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 可预约排班缓存
+ * 
+ * 按日期和按医生缓存可预约排班查询结果（均为排班、医生、科室三表关联），
+ * 患者预约前反复刷新的浏览流量由缓存直接返回，不再访问数据库。
+ * 
+ * 容量和过期时间有上限；排班增删改和预约数变化时按日期、按医生精确失效
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Component
+public class ScheduleAvailabilityCache {
+    
+    @Value("${cache.availability.max-size:1000}")
+    private long maxSize;
+    
+    @Value("${cache.availability.ttl-seconds:30}")
+    private long ttlSeconds;
+    
+    /**
+     * 日期 -> 当日所有可预约排班
+     */
+    private Cache<LocalDate, List<Schedule>> byDate;
+    
+    /**
+     * 医生 + 起始日期 -> 该医生从起始日期起的可预约排班
+     */
+    private Cache<DoctorKey, List<Schedule>> byDoctor;
+    
+    @PostConstruct
+    public void init() {
+        byDate = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        byDoctor = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * 读取指定日期的可预约排班，未命中时调用loader查询并缓存
+     * 返回的列表不可修改
+     */
+    public List<Schedule> getByDate(LocalDate workDate, Supplier<List<Schedule>> loader) {
+        return byDate.get(workDate, key -> List.copyOf(loader.get()));
+    }
+    
+    /**
+     * 读取医生从指定日期起的可预约排班，未命中时调用loader查询并缓存
+     * 返回的列表不可修改
+     */
+    public List<Schedule> getByDoctor(String doctorId, LocalDate fromDate, Supplier<List<Schedule>> loader) {
+        return byDoctor.get(new DoctorKey(doctorId, fromDate), key -> List.copyOf(loader.get()));
+    }
+    
+    /**
+     * 排班或其预约数变化时，使该日期和该医生的缓存失效
+     */
+    public void invalidate(String doctorId, LocalDate workDate) {
+        if (workDate != null) {
+            byDate.invalidate(workDate);
+        }
+        if (doctorId != null) {
+            byDoctor.asMap().keySet().removeIf(key -> key.doctorId().equals(doctorId));
+        }
+    }
+    
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("byDate", toMap(byDate.stats(), byDate.estimatedSize()));
+        stats.put("byDoctor", toMap(byDoctor.stats(), byDoctor.estimatedSize()));
+        return stats;
+    }
+    
+    private Map<String, Object> toMap(CacheStats stats, long size) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("hits", stats.hitCount());
+        map.put("misses", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictions", stats.evictionCount());
+        map.put("size", size);
+        return map;
+    }
+    
+    private record DoctorKey(String doctorId, LocalDate fromDate) {
+    }
+}
@@ -0,0 +1,246 @@
+package com.pegasus.hospital.cache;
+
+import com.pegasus.hospital.entity.Schedule;
+import com.pegasus.hospital.mapper.ScheduleMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 号源库存（内存）
+ * 
+ * 以排班ID为键，用原子计数器保存每个排班的剩余号源。
+ * 预约时先在内存中预占号源，号源已满的请求在执行任何SQL之前即被拒绝，
+ * 只有预占成功的请求才会进入数据库更新；数据库仍是最终裁决者。
+ * 
+ * 启动时从schedule表重建，之后随排班增删改、预约和取消同步维护。
+ * 预占在所属事务提交或回滚前计为未决：提交时转为已售出，回滚时归还；
+ * 从数据库重新加载时在原库存对象上扣除未决数量，不丢失正在进行中的预占
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@Component
+public class SlotInventory {
+    
+    @Autowired
+    private ScheduleMapper scheduleMapper;
+    
+    private final ConcurrentMap<Long, Slot> slots = new ConcurrentHashMap<>();
+    
+    /**
+     * 启动时从数据库重建今天及以后的排班库存
+     * 更早的排班在首次访问时按需加载
+     */
+    @PostConstruct
+    public void rebuild() {
+        try {
+            List<Schedule> schedules = scheduleMapper.selectInventoryFrom(LocalDate.now());
+            slots.clear();
+            for (Schedule schedule : schedules) {
+                slots.put(schedule.getId(), new Slot(schedule));
+            }
+            log.info("号源库存已重建，共 {} 个排班", schedules.size());
+        } catch (Exception e) {
+            // 数据库不可用时不阻止启动，后续按需加载
+            log.warn("号源库存重建失败，将按需加载: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 获取排班库存，不在内存中时从数据库加载
+     * 
+     * @return 排班库存，排班不存在时返回null
+     */
+    public Slot get(Long scheduleId) {
+        Slot slot = slots.get(scheduleId);
+        if (slot != null) {
+            return slot;
+        }
+        Schedule schedule = scheduleMapper.selectById(scheduleId);
+        if (schedule == null) {
+            return null;
+        }
+        Slot loaded = new Slot(schedule);
+        Slot existing = slots.putIfAbsent(scheduleId, loaded);
+        return existing != null ? existing : loaded;
+    }
+    
+    /**
+     * 预占一个号源，当前事务回滚时自动归还
+     * 
+     * @return 预占成功返回true，号源已满或排班不存在返回false
+     */
+    public boolean tryReserve(Long scheduleId) {
+        Slot slot = get(scheduleId);
+        if (slot == null || !slot.tryReserve()) {
+            return false;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            slot.settle();
+            return true;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            
+            private boolean settled;
+            
+            /**
+             * 提交前结束未决：提交完成前的短暂窗口内库存最多多算一个，由数据库拒绝，
+             * 而提交后才结束会使reload同时从数据库和未决中扣除，永久少卖
+             */
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                slot.settle();
+                settled = true;
+            }
+            
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                if (!settled) {
+                    slot.settle();
+                }
+                slot.release();
+            }
+        });
+        return true;
+    }
+    
+    /**
+     * 释放一个号源（取消预约时）
+     */
+    public void release(Long scheduleId) {
+        Slot slot = slots.get(scheduleId);
+        if (slot != null) {
+            slot.release();
+        }
+    }
+    
+    /**
+     * 以数据库中的排班记录覆盖内存库存（新增排班时）
+     */
+    public void put(Schedule schedule) {
+        slots.put(schedule.getId(), new Slot(schedule));
+    }
+    
+    /**
+     * 从数据库重新加载单个排班的库存（修改排班或内存与数据库不一致时）
+     * 已在内存中的排班就地更新，其他线程持有的库存对象和未决预占仍然有效
+     */
+    public void reload(Long scheduleId) {
+        Schedule schedule = scheduleMapper.selectById(scheduleId);
+        if (schedule == null) {
+            slots.remove(scheduleId);
+            return;
+        }
+        Slot slot = slots.putIfAbsent(scheduleId, new Slot(schedule));
+        if (slot != null) {
+            slot.reset(schedule);
+        }
+    }
+    
+    /**
+     * 移除排班库存（删除排班时）
+     */
+    public void remove(Long scheduleId) {
+        slots.remove(scheduleId);
+    }
+    
+    /**
+     * 单个排班的库存
+     * 排班的医生和日期随库存一起保存以免重复查询，修改排班后由reload就地更新
+     */
+    public static class Slot {
+        
+        private volatile String doctorId;
+        
+        private volatile LocalDate workDate;
+        
+        private volatile int maxPatients;
+        
+        private final AtomicInteger remaining;
+        
+        /**
+         * 已预占、所属事务尚未结束的号源数
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+        
+        Slot(Schedule schedule) {
+            this.doctorId = schedule.getDoctorId();
+            this.workDate = schedule.getWorkDate();
+            this.maxPatients = schedule.getMaxPatients();
+            this.remaining = new AtomicInteger(Math.max(0, schedule.getMaxPatients() - schedule.getBookedCount()));
+        }
+        
+        boolean tryReserve() {
+            int current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            pending.incrementAndGet();
+            return true;
+        }
+        
+        /**
+         * 预占所属的事务已结束
+         */
+        void settle() {
+            pending.decrementAndGet();
+        }
+        
+        /**
+         * 以数据库中的已预约数重置剩余号源，扣除尚未提交的预占
+         */
+        void reset(Schedule schedule) {
+            doctorId = schedule.getDoctorId();
+            workDate = schedule.getWorkDate();
+            maxPatients = schedule.getMaxPatients();
+            int current;
+            int updated;
+            do {
+                current = remaining.get();
+                updated = Math.max(0, schedule.getMaxPatients() - schedule.getBookedCount() - pending.get());
+            } while (!remaining.compareAndSet(current, updated));
+        }
+        
+        void release() {
+            int current;
+            do {
+                current = remaining.get();
+                if (current >= maxPatients) {
+                    return;
+                }
+            } while (!remaining.compareAndSet(current, current + 1));
+        }
+        
+        public String getDoctorId() {
+            return doctorId;
+        }
+        
+        public LocalDate getWorkDate() {
+            return workDate;
+        }
+        
+        public int getMaxPatients() {
+            return maxPatients;
+        }
+        
+        public int getRemaining() {
+            return remaining.get();
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.pegasus.hospital.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
@@ -18,14 +23,27 @@ import java.util.concurrent.ThreadPoolExecutor;
  */
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
     
+    @Autowired
+    private Environment environment;
+    
     /**
      * 自定义线程池
-     * 用于处理异步任务
+     * 用于处理异步任务；虚拟线程模式下每个任务一个虚拟线程，并发数与平台线程池的最大线程数一致
      */
     @Bean("taskExecutor")
     public Executor taskExecutor() {
+        // 与Spring Boot判断虚拟线程的条件一致：virtual profile开启且运行在Java 21及以上
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("Hospital-Async-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(20);
+            executor.setTaskTerminationTimeout(60_000);
+            return executor;
+        }
+        
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         
         // 核心线程数
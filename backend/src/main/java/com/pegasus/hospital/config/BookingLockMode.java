@@ -0,0 +1,23 @@
+package com.pegasus.hospital.config;
+
+/**
+ * 预约并发控制模式
+ * 
+ * 通过配置项 booking.lock-mode 切换，见 {@link MyBatisPlusConfig}
+ * 
+ * @author Pegasus Hospital Team
+ */
+public enum BookingLockMode {
+    
+    /**
+     * 乐观锁模式：先读取version，更新时校验version
+     * 并发预约同一排班时只有一个请求成功，其余需要重试
+     */
+    OPTIMISTIC,
+    
+    /**
+     * 原子更新模式：仅依赖 booked_count < max_patients 条件
+     * 由单条UPDATE语句裁决并发，有剩余号源的请求一次即可成功，无需重试
+     */
+    ATOMIC
+}
@@ -0,0 +1,143 @@
+package com.pegasus.hospital.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 限制并发数据库连接的数据源
+ * 
+ * 获取连接前先取得信号量许可，连接关闭时归还。
+ * 虚拟线程模式下请求线程数不再受Tomcat线程池限制，成千上万的请求同时等待连接池时，
+ * 用许可数（默认为连接池大小减去预留连接数）把进入JDBC的线程限制在连接数以内，其余请求在信号量上排队。
+ * 
+ * 已持有许可的线程再次获取连接（如事务中以REQUIRES_NEW开启独立事务）时不再排队，直接从连接池获取，
+ * 否则许可全部被外层事务占用时嵌套获取会互相等待直到超时；连接池中预留的连接保证嵌套获取总能拿到连接
+ * 
+ * @author Pegasus Hospital Team
+ */
+public class ConnectionLimitingDataSource extends DelegatingDataSource {
+    
+    private final Semaphore permits;
+    
+    private final long acquireTimeoutMillis;
+    
+    /**
+     * 当前线程持有的连接数（只由本线程读写）
+     */
+    private final ThreadLocal<int[]> held = ThreadLocal.withInitial(() -> new int[1]);
+    
+    public ConnectionLimitingDataSource(DataSource target, int maxConcurrent, long acquireTimeoutMillis) {
+        super(target);
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        int[] count = held.get();
+        boolean permitted = acquireIfOutermost(count);
+        try {
+            return wrap(super.getConnection(), count, permitted);
+        } catch (SQLException | RuntimeException e) {
+            if (permitted) {
+                permits.release();
+            }
+            throw e;
+        }
+    }
+    
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        int[] count = held.get();
+        boolean permitted = acquireIfOutermost(count);
+        try {
+            return wrap(super.getConnection(username, password), count, permitted);
+        } catch (SQLException | RuntimeException e) {
+            if (permitted) {
+                permits.release();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * 当前可用许可数
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+    
+    /**
+     * 等待许可的线程数（估算值）
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+    
+    /**
+     * 当前线程未持有连接时取得许可
+     * 
+     * @return 是否取得了许可（连接关闭时需要归还）
+     */
+    private boolean acquireIfOutermost(int[] count) throws SQLException {
+        if (count[0] > 0) {
+            return false;
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "等待数据库连接许可超时（" + acquireTimeoutMillis + "ms）");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("等待数据库连接许可被中断", e);
+        }
+        return true;
+    }
+    
+    /**
+     * 包装连接，close()时减少线程持有数并归还许可（只执行一次）
+     */
+    private Connection wrap(Connection connection, int[] count, boolean permitted) {
+        AtomicBoolean released = new AtomicBoolean(false);
+        count[0]++;
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                        try {
+                            connection.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                count[0]--;
+                                if (permitted) {
+                                    permits.release();
+                                }
+                            }
+                        }
+                        return null;
+                    }
+                    if ("unwrap".equals(method.getName()) && ((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    if ("isWrapperFor".equals(method.getName()) && ((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,50 @@
+package com.pegasus.hospital.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 数据库并发限制配置
+ * 
+ * 开启 datasource.limiter.enabled 时把数据源包装为ConnectionLimitingDataSource，
+ * 许可数未配置时取HikariCP的最大连接数减去预留连接数，预留的连接供已持有许可的线程嵌套获取；
+ * 虚拟线程模式（virtual profile）下默认开启
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "datasource.limiter.enabled", havingValue = "true")
+public class DataSourceLimiterConfig {
+    
+    @Bean
+    public static BeanPostProcessor connectionLimitingPostProcessor(
+            @Value("${datasource.limiter.max-concurrent:0}") int maxConcurrent,
+            @Value("${datasource.limiter.reserved:2}") int reserved,
+            @Value("${datasource.limiter.acquire-timeout-ms:30000}") long acquireTimeoutMillis) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionLimitingDataSource) {
+                    return bean;
+                }
+                int permits = maxConcurrent;
+                if (permits <= 0 && dataSource instanceof HikariDataSource hikari) {
+                    permits = Math.max(1, hikari.getMaximumPoolSize() - Math.max(1, reserved));
+                }
+                if (permits <= 0) {
+                    return bean;
+                }
+                log.info("数据源 {} 并发连接上限: {}", beanName, permits);
+                return new ConnectionLimitingDataSource(dataSource, permits, acquireTimeoutMillis);
+            }
+        };
+    }
+}
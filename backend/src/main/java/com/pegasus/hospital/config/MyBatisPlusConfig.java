@@ -5,7 +5,9 @@ import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.OptimisticLockerInnerInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.ibatis.reflection.MetaObject;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -14,13 +16,31 @@ import java.time.LocalDateTime;
 /**
  * MyBatis-Plus配置类
  * 
- * 配置分页插件、乐观锁插件、自动填充等
+ * 配置分页插件、乐观锁插件、语句耗时统计与慢查询日志、预约并发控制模式、自动填充等
  * 
  * @author Pegasus Hospital Team
  */
 @Configuration
 public class MyBatisPlusConfig {
     
+    /**
+     * 预约并发控制模式：optimistic（乐观锁）/ atomic（原子更新）
+     */
+    @Value("${booking.lock-mode:optimistic}")
+    private String bookingLockMode;
+    
+    /**
+     * 慢查询阈值（毫秒）
+     */
+    @Value("${mybatis.slow-query.threshold-ms:200}")
+    private long slowQueryThresholdMs;
+    
+    /**
+     * 慢查询日志采样率
+     */
+    @Value("${mybatis.slow-query.sample-rate:1.0}")
+    private double slowQuerySampleRate;
+    
     /**
      * MyBatis-Plus插件配置
      */
@@ -32,11 +52,31 @@ public class MyBatisPlusConfig {
         interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL));
         
         // 乐观锁插件（用于预约并发控制）
+        // 原子更新模式下预约不再校验version，但管理员修改排班仍依赖它防止覆盖预约数
         interceptor.addInnerInterceptor(new OptimisticLockerInnerInterceptor());
         
         return interceptor;
     }
     
+    /**
+     * 语句耗时统计与慢查询日志插件
+     */
+    @Bean
+    public MybatisMetricsInterceptor mybatisMetricsInterceptor(MeterRegistry meterRegistry) {
+        return new MybatisMetricsInterceptor(meterRegistry, slowQueryThresholdMs, slowQuerySampleRate);
+    }
+    
+    /**
+     * 预约并发控制模式
+     * 
+     * optimistic：按version乐观锁增加预约数，冲突的请求失败后需重试
+     * atomic：仅以 booked_count < max_patients 为条件原子增加，有余号即成功
+     */
+    @Bean
+    public BookingLockMode bookingLockMode() {
+        return BookingLockMode.valueOf(bookingLockMode.trim().toUpperCase());
+    }
+    
     /**
      * 自动填充处理器
      * 自动填充创建时间和更新时间
@@ -0,0 +1,162 @@
+package com.pegasus.hospital.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyBatis语句耗时统计与慢查询日志
+ * 
+ * 按Mapper方法（如 AppointmentMapper.selectByApptId）记录每条语句的执行耗时，
+ * 流式查询的耗时包含整个结果集的处理
+ * 
+ * 耗时超过阈值的语句按采样率写入慢查询日志（SLOW_SQL），包含Mapper方法、SQL和绑定参数；
+ * 参数只在判定为慢查询后才解析，正常语句不产生额外开销
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class,
+                        CacheKey.class, BoundSql.class})
+})
+public class MybatisMetricsInterceptor implements Interceptor {
+    
+    private static final Logger SLOW_SQL = LoggerFactory.getLogger("SLOW_SQL");
+    
+    /**
+     * 单个参数值在日志中的最大长度
+     */
+    private static final int MAX_VALUE_LENGTH = 100;
+    
+    private final MeterRegistry meterRegistry;
+    
+    private final long slowThresholdNanos;
+    
+    private final double slowSampleRate;
+    
+    /**
+     * @param slowThresholdMs 慢查询阈值（毫秒），小于等于0时不记录慢查询日志
+     * @param slowSampleRate  慢查询日志采样率，取值 0~1
+     */
+    public MybatisMetricsInterceptor(MeterRegistry meterRegistry, long slowThresholdMs, double slowSampleRate) {
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdNanos = slowThresholdMs > 0 ? TimeUnit.MILLISECONDS.toNanos(slowThresholdMs) : Long.MAX_VALUE;
+        this.slowSampleRate = Math.max(0, Math.min(1, slowSampleRate));
+    }
+    
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            Object result = invocation.proceed();
+            outcome = "success";
+            return result;
+        } finally {
+            long nanos = sample.stop(meterRegistry.timer("hospital.mybatis.statement",
+                    "statement", shortId(statement.getId()),
+                    "type", statement.getSqlCommandType().name(),
+                    "outcome", outcome));
+            if (nanos >= slowThresholdNanos && sampled()) {
+                logSlow(invocation, statement, nanos, outcome);
+            }
+        }
+    }
+    
+    private boolean sampled() {
+        return slowSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < slowSampleRate;
+    }
+    
+    /**
+     * 写入慢查询日志，日志本身的异常不影响语句结果
+     */
+    private void logSlow(Invocation invocation, MappedStatement statement, long nanos, String outcome) {
+        if (!SLOW_SQL.isWarnEnabled()) {
+            return;
+        }
+        try {
+            Object[] args = invocation.getArgs();
+            Object parameter = args[1];
+            BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : statement.getBoundSql(parameter);
+            SLOW_SQL.warn("{} 耗时 {} ms [{}] SQL: {} 参数: {}",
+                    statement.getId(),
+                    String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0),
+                    outcome,
+                    boundSql.getSql().replaceAll("\\s+", " ").trim(),
+                    boundParameters(statement.getConfiguration(), boundSql));
+        } catch (Exception e) {
+            SLOW_SQL.warn("{} 耗时 {} ms，解析参数失败: {}",
+                    statement.getId(), TimeUnit.NANOSECONDS.toMillis(nanos), e.getMessage());
+        }
+    }
+    
+    /**
+     * 按占位符顺序取出绑定参数，取值方式与MyBatis的DefaultParameterHandler一致
+     * 密码类参数不输出原值，过长的值截断
+     */
+    private static List<String> boundParameters(Configuration configuration, BoundSql boundSql) {
+        Object parameterObject = boundSql.getParameterObject();
+        List<ParameterMapping> mappings = boundSql.getParameterMappings();
+        List<String> values = new ArrayList<>(mappings.size());
+        for (ParameterMapping mapping : mappings) {
+            String property = mapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameterObject == null) {
+                value = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+                value = parameterObject;
+            } else {
+                value = configuration.newMetaObject(parameterObject).getValue(property);
+            }
+            values.add(property + "=" + format(property, value));
+        }
+        return values;
+    }
+    
+    private static String format(String property, Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (property.toLowerCase(Locale.ROOT).contains("password")) {
+            return "******";
+        }
+        String text = String.valueOf(value);
+        return text.length() > MAX_VALUE_LENGTH ? text.substring(0, MAX_VALUE_LENGTH) + "..." : text;
+    }
+    
+    /**
+     * com.pegasus.hospital.mapper.AppointmentMapper.selectByApptId -> AppointmentMapper.selectByApptId
+     */
+    private static String shortId(String id) {
+        int method = id.lastIndexOf('.');
+        int type = method > 0 ? id.lastIndexOf('.', method - 1) : -1;
+        return type >= 0 ? id.substring(type + 1) : id;
+    }
+}
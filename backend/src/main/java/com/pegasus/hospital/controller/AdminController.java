@@ -1,14 +1,18 @@
 package com.pegasus.hospital.controller;
 
-import com.pegasus.hospital.dto.DoctorDTO;
+import com.pegasus.hospital.cache.ReferenceDataCache;
+import com.pegasus.hospital.cache.ScheduleAvailabilityCache;
+import com.pegasus.hospital.dto.ImportJob;
+import com.pegasus.hospital.dto.ReportFile;
 import com.pegasus.hospital.dto.Result;
-import com.pegasus.hospital.dto.ScheduleDTO;
-import com.pegasus.hospital.entity.Appointment;
 import com.pegasus.hospital.service.AppointmentService;
-import com.pegasus.hospital.service.DoctorService;
-import com.pegasus.hospital.service.ScheduleService;
+import com.pegasus.hospital.service.ImportJobService;
+import com.pegasus.hospital.service.ReportService;
+import com.pegasus.hospital.service.StatisticsService;
+import com.pegasus.hospital.util.BookingAdmission;
 import com.pegasus.hospital.util.ExcelUtil;
-import com.pegasus.hospital.util.PdfUtil;
+import com.pegasus.hospital.util.FileDownloadUtil;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -16,10 +20,11 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -34,66 +39,72 @@ import java.util.Map;
 public class AdminController {
     
     @Autowired
-    private DoctorService doctorService;
+    private AppointmentService appointmentService;
     
     @Autowired
-    private ScheduleService scheduleService;
+    private ExcelUtil excelUtil;
     
     @Autowired
-    private AppointmentService appointmentService;
+    private ReportService reportService;
     
     @Autowired
-    private ExcelUtil excelUtil;
+    private ScheduleAvailabilityCache availabilityCache;
+    
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
     
     @Autowired
-    private PdfUtil pdfUtil;
+    private BookingAdmission bookingAdmission;
+    
+    @Autowired
+    private ImportJobService importJobService;
+    
+    @Autowired
+    private StatisticsService statisticsService;
     
     /**
-     * 导入医生信息（Excel）
+     * 异步导入医生信息（Excel）
      * 
-     * POST /api/admin/doctor/import
+     * POST /api/admin/doctor/import/async
      * 
      * Excel格式：医生ID | 姓名 | 密码 | 科室名称 | 专长描述
+     * 
+     * 立即返回任务ID，导入在后台进行，通过 /admin/import/jobs/{jobId} 查询进度；
+     * 导入不占用请求线程，不再提供同步导入接口
      */
-    @PostMapping("/doctor/import")
-    public Result<Map<String, Object>> importDoctors(@RequestParam("file") MultipartFile file) {
-        try {
-            List<DoctorDTO> doctors = excelUtil.parseDoctorExcel(file);
-            int successCount = doctorService.batchImport(doctors);
-            
-            Map<String, Object> result = new HashMap<>();
-            result.put("total", doctors.size());
-            result.put("success", successCount);
-            result.put("failed", doctors.size() - successCount);
-            
-            return Result.success("导入完成", result);
-        } catch (Exception e) {
-            return Result.error("导入失败：" + e.getMessage());
-        }
+    @PostMapping("/doctor/import/async")
+    public Result<ImportJob> importDoctorsAsync(@RequestParam("file") MultipartFile file) {
+        return Result.success("导入任务已提交", importJobService.submitDoctorImport(file));
     }
     
     /**
-     * 导入排班信息（Excel）
+     * 异步导入排班信息（Excel）
      * 
-     * POST /api/admin/schedule/import
+     * POST /api/admin/schedule/import/async
      * 
      * Excel格式：医生ID | 工作日期 | 开始时间 | 结束时间 | 最大预约数
+     * 
+     * 立即返回任务ID，导入在后台进行，通过 /admin/import/jobs/{jobId} 查询进度
      */
-    @PostMapping("/schedule/import")
-    public Result<Map<String, Object>> importSchedules(@RequestParam("file") MultipartFile file) {
-        try {
-            List<ScheduleDTO> schedules = excelUtil.parseScheduleExcel(file);
-            int successCount = scheduleService.batchImport(schedules);
-            
-            Map<String, Object> result = new HashMap<>();
-            result.put("total", schedules.size());
-            result.put("success", successCount);
-            result.put("failed", schedules.size() - successCount);
-            
-            return Result.success("导入完成", result);
-        } catch (Exception e) {
-            return Result.error("导入失败：" + e.getMessage());
+    @PostMapping("/schedule/import/async")
+    public Result<ImportJob> importSchedulesAsync(@RequestParam("file") MultipartFile file) {
+        return Result.success("导入任务已提交", importJobService.submitScheduleImport(file));
+    }
+    
+    /**
+     * 查询导入任务进度
+     * 
+     * GET /api/admin/import/jobs/{jobId}
+     * 
+     * 返回任务状态、已处理行数、成功/失败行数及失败明细
+     */
+    @GetMapping("/import/jobs/{jobId}")
+    public Result<ImportJob> getImportJob(@PathVariable String jobId) {
+        ImportJob job = importJobService.getJob(jobId);
+        if (job == null) {
+            return Result.error("导入任务不存在或已过期");
         }
+        return Result.success(job);
     }
     
     /**
@@ -115,8 +126,11 @@ public class AdminController {
             endDate = LocalDate.now();
         }
         
-        List<Appointment> appointments = appointmentService.getForExport(startDate, endDate);
-        excelUtil.exportAppointments(appointments, response);
+        // 流式读取并分批写入，内存占用与导出量无关；读取中途出错时不输出不完整的文件
+        try (ExcelUtil.AppointmentExportWriter writer = excelUtil.openAppointmentExport(response)) {
+            appointmentService.exportForEach(startDate, endDate, writer::write);
+            writer.finish();
+        }
     }
     
     /**
@@ -125,10 +139,12 @@ public class AdminController {
      * GET /api/admin/report/monthly
      * 
      * 包含：各科室预约量、医生工作量等数据
+     * 已结束月份的报告从磁盘缓存发送，当月报告每次重新生成
      */
     @GetMapping("/report/monthly")
     public void generateMonthlyReport(
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth month,
+            HttpServletRequest request,
             HttpServletResponse response) throws IOException {
         
         // 默认当前月
@@ -136,7 +152,46 @@ public class AdminController {
             month = YearMonth.now();
         }
         
-        pdfUtil.generateMonthlyReport(month, response);
+        ReportFile report = reportService.getMonthlyReport(month);
+        String fileName = "月度统计报告_" + month.format(DateTimeFormatter.ofPattern("yyyy-MM")) + ".pdf";
+        try {
+            FileDownloadUtil.sendFile(report.getPath(), fileName, "application/pdf", report.isCached(),
+                    request, response);
+        } finally {
+            if (!report.isCached()) {
+                Files.deleteIfExists(report.getPath());
+            }
+        }
+    }
+    
+    /**
+     * 查询实时预约统计
+     * 
+     * GET /api/admin/statistics/live?date=2024-01-01
+     * 
+     * 按状态、科室、医生汇总指定日期的预约量，默认今天；数据来自内存计数器
+     */
+    @GetMapping("/statistics/live")
+    public Result<Map<String, Object>> liveStatistics(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate date) {
+        return Result.success(statisticsService.getLiveStatistics(date != null ? date : LocalDate.now()));
+    }
+    
+    /**
+     * 从预约表重算预约日统计
+     * 
+     * POST /api/admin/statistics/rebuild?fromDate=2024-01-01
+     * 
+     * 用于首次上线回填历史数据，或手动校正统计偏差；
+     * 每日夜间任务会自动重算最近几天的统计
+     */
+    @PostMapping("/statistics/rebuild")
+    public Result<Integer> rebuildStatistics(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate fromDate) {
+        int rows = statisticsService.rebuildFrom(fromDate);
+        // 已缓存的月度报告可能是按重算前（或回填前为空）的统计生成的
+        reportService.evictMonthlyReports(YearMonth.from(fromDate));
+        return Result.success("统计重算完成", rows);
     }
     
     /**
@@ -158,4 +213,18 @@ public class AdminController {
     public void downloadScheduleTemplate(HttpServletResponse response) throws IOException {
         excelUtil.generateScheduleTemplate(response);
     }
+    
+    /**
+     * 查询缓存命中统计
+     * 
+     * GET /api/admin/cache/stats
+     */
+    @GetMapping("/cache/stats")
+    public Result<Map<String, Object>> cacheStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("scheduleAvailability", availabilityCache.getStats());
+        stats.put("referenceData", referenceDataCache.getStats());
+        stats.put("bookingAdmission", bookingAdmission.getStats());
+        return Result.success(stats);
+    }
 }
@@ -3,9 +3,14 @@ package com.pegasus.hospital.controller;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.pegasus.hospital.dto.AppointmentRequest;
+import com.pegasus.hospital.dto.CursorPage;
 import com.pegasus.hospital.dto.Result;
 import com.pegasus.hospital.entity.Appointment;
+import com.pegasus.hospital.exception.BusinessException;
+import com.pegasus.hospital.security.AuthContext;
+import com.pegasus.hospital.security.AuthPrincipal;
 import com.pegasus.hospital.service.AppointmentService;
+import com.pegasus.hospital.util.BookingCoalescer;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -18,6 +23,8 @@ import java.util.List;
  * 预约控制器
  * 
  * 提供预约挂号、取消预约、查询预约等接口
+ * 所有接口都需要登录；预约挂号和我的预约只接受患者令牌，患者ID取自令牌；
+ * 操作单个预约时患者只能操作本人的预约，医生只能操作本人接诊的预约
  * 
  * @author Pegasus Hospital Team
  */
@@ -28,16 +35,23 @@ public class AppointmentController {
     @Autowired
     private AppointmentService appointmentService;
     
+    @Autowired
+    private BookingCoalescer bookingCoalescer;
+    
     /**
      * 预约挂号
      * 
      * POST /api/appointment/book
      * 
      * 使用乐观锁进行并发控制，确保号源不超卖
+     * 患者ID取自令牌，忽略请求体中的patientId；
+     * 经过准入控制：号源已满或排队人数过多时直接返回，不进入数据库；
+     * 同一排班的并发请求合并为一次事务执行
      */
     @PostMapping("/book")
     public Result<Appointment> book(@Valid @RequestBody AppointmentRequest request) {
-        Appointment appointment = appointmentService.book(request);
+        request.setPatientId(AuthContext.requirePatientId());
+        Appointment appointment = bookingCoalescer.book(request);
         return Result.success("预约成功，预约号：" + appointment.getApptId(), appointment);
     }
     
@@ -46,11 +60,12 @@ public class AppointmentController {
      * 
      * PUT /api/appointment/{apptId}/cancel
      * 
-     * 规则：预约时间2小时前可取消
+     * 规则：预约时间2小时前可取消；预约患者本人或管理员可以取消
      */
     @PutMapping("/{apptId}/cancel")
     public Result<Void> cancel(@PathVariable String apptId,
                                @RequestParam(required = false) String reason) {
+        requireAccess(apptId, AuthContext.TYPE_PATIENT, AuthContext.TYPE_ADMIN);
         appointmentService.cancel(apptId, reason);
         return Result.success("预约已取消", null);
     }
@@ -59,9 +74,12 @@ public class AppointmentController {
      * 完成预约（就诊完成）
      * 
      * PUT /api/appointment/{apptId}/complete
+     * 
+     * 接诊医生本人或管理员可以操作
      */
     @PutMapping("/{apptId}/complete")
     public Result<Void> complete(@PathVariable String apptId) {
+        requireAccess(apptId, AuthContext.TYPE_DOCTOR, AuthContext.TYPE_ADMIN);
         appointmentService.complete(apptId);
         return Result.success("预约已完成", null);
     }
@@ -70,31 +88,35 @@ public class AppointmentController {
      * 查询预约详情
      * 
      * GET /api/appointment/{apptId}
+     * 
+     * 预约患者本人、接诊医生或管理员可以查询
      */
     @GetMapping("/{apptId}")
     public Result<Appointment> getByApptId(@PathVariable String apptId) {
-        Appointment appointment = appointmentService.getByApptId(apptId);
-        if (appointment == null) {
-            return Result.error("预约不存在");
-        }
+        Appointment appointment = requireAccess(apptId,
+                AuthContext.TYPE_PATIENT, AuthContext.TYPE_DOCTOR, AuthContext.TYPE_ADMIN);
         return Result.success(appointment);
     }
     
     /**
      * 查询患者的预约列表
      * 
-     * GET /api/appointment/my?patientId=xxx
+     * GET /api/appointment/my
+     * 
+     * 只返回令牌中患者本人的预约
      */
     @GetMapping("/my")
-    public Result<List<Appointment>> getMyAppointments(@RequestParam String patientId) {
-        List<Appointment> appointments = appointmentService.getByPatientId(patientId);
+    public Result<List<Appointment>> getMyAppointments() {
+        List<Appointment> appointments = appointmentService.getByPatientId(AuthContext.requirePatientId());
         return Result.success(appointments);
     }
     
     /**
-     * 分页查询预约记录（管理员）
+     * 分页查询预约记录（管理员、医生）
      * 
      * GET /api/appointment/page
+     * 
+     * 医生只能查询本人接诊的预约
      */
     @GetMapping("/page")
     public Result<IPage<Appointment>> page(
@@ -104,8 +126,67 @@ public class AppointmentController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam(required = false) Long deptId) {
+        String doctorId = requireListScope();
         Page<Appointment> page = new Page<>(pageNum, pageSize);
-        IPage<Appointment> result = appointmentService.getPage(page, status, startDate, endDate, deptId);
+        IPage<Appointment> result = appointmentService.getPage(page, status, startDate, endDate, deptId, doctorId);
         return Result.success(result);
     }
+    
+    /**
+     * 游标分页查询预约记录（管理员、医生）
+     * 
+     * GET /api/appointment/page/cursor?cursor=xxx
+     * 
+     * 首页不传cursor，之后传上一页返回的nextCursor；
+     * 不统计总数时翻页深度不影响响应时间；医生只能查询本人接诊的预约
+     */
+    @GetMapping("/page/cursor")
+    public Result<CursorPage<Appointment>> pageByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") Integer pageSize,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Long deptId,
+            @RequestParam(defaultValue = "false") Boolean withTotal) {
+        String doctorId = requireListScope();
+        int size = Math.min(Math.max(pageSize, 1), 100);
+        CursorPage<Appointment> result = appointmentService.getPageByCursor(cursor, size, status,
+                startDate, endDate, deptId, doctorId, withTotal);
+        return Result.success(result);
+    }
+    
+    /**
+     * 校验当前登录身份可以查询预约列表
+     * 
+     * @return 医生登录时返回医生ID，查询范围限定为本人接诊的预约；管理员返回null，不限
+     */
+    private String requireListScope() {
+        AuthPrincipal principal = AuthContext.requireType(AuthContext.TYPE_ADMIN, AuthContext.TYPE_DOCTOR);
+        return AuthContext.TYPE_DOCTOR.equals(principal.userType()) ? principal.userId() : null;
+    }
+    
+    /**
+     * 校验当前登录身份可以操作指定预约
+     * 
+     * 登录身份须为指定类型之一；患者须为预约患者本人，医生须为接诊医生，管理员不限
+     * 
+     * @return 预约记录
+     */
+    private Appointment requireAccess(String apptId, String... userTypes) {
+        AuthPrincipal principal = AuthContext.requireType(userTypes);
+        Appointment appointment = appointmentService.getByApptId(apptId);
+        if (appointment == null) {
+            throw new BusinessException("预约不存在");
+        }
+        String owner = switch (principal.userType()) {
+            case AuthContext.TYPE_PATIENT -> appointment.getPatientId();
+            case AuthContext.TYPE_DOCTOR -> appointment.getDoctorId();
+            default -> principal.userId();
+        };
+        if (!principal.userId().equals(owner)) {
+            throw new BusinessException(403, "无权操作该预约");
+        }
+        return appointment;
+    }
 }
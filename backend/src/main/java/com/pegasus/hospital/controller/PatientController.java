@@ -4,6 +4,9 @@ import com.pegasus.hospital.dto.PatientRegisterRequest;
 import com.pegasus.hospital.dto.PatientUpdateRequest;
 import com.pegasus.hospital.dto.Result;
 import com.pegasus.hospital.entity.Patient;
+import com.pegasus.hospital.exception.BusinessException;
+import com.pegasus.hospital.security.AuthContext;
+import com.pegasus.hospital.security.AuthPrincipal;
 import com.pegasus.hospital.service.PatientService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
  * 患者控制器
  * 
  * 提供患者注册、注销、信息修改等接口
+ * 除注册外，患者只能访问本人的信息，管理员不限
  * 
  * @author Pegasus Hospital Team
  */
@@ -43,6 +47,7 @@ public class PatientController {
      */
     @GetMapping("/{patientId}")
     public Result<Patient> getInfo(@PathVariable String patientId) {
+        requireSelfOrAdmin(patientId);
         Patient patient = patientService.getByPatientId(patientId);
         if (patient == null) {
             return Result.error("患者不存在");
@@ -60,6 +65,7 @@ public class PatientController {
     @PutMapping("/{patientId}")
     public Result<Patient> updateInfo(@PathVariable String patientId, 
                                        @Valid @RequestBody PatientUpdateRequest request) {
+        requireSelfOrAdmin(patientId);
         Patient patient = patientService.updateInfo(patientId, request);
         return Result.success("信息修改成功", patient);
     }
@@ -71,7 +77,18 @@ public class PatientController {
      */
     @DeleteMapping("/{patientId}")
     public Result<Void> deactivate(@PathVariable String patientId) {
+        requireSelfOrAdmin(patientId);
         patientService.deactivate(patientId);
         return Result.success("账号已注销", null);
     }
+    
+    /**
+     * 校验当前登录身份为该患者本人或管理员
+     */
+    private void requireSelfOrAdmin(String patientId) {
+        AuthPrincipal principal = AuthContext.requireType(AuthContext.TYPE_PATIENT, AuthContext.TYPE_ADMIN);
+        if (AuthContext.TYPE_PATIENT.equals(principal.userType()) && !principal.userId().equals(patientId)) {
+            throw new BusinessException(403, "无权访问该患者信息");
+        }
+    }
 }
@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 public class AppointmentRequest {
     
     /**
-     * 患者ID（从token中获取，可选）
+     * 患者ID（由服务端按令牌设置，请求体中的值被忽略）
      */
     private String patientId;
     
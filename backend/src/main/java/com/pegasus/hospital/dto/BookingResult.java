@@ -0,0 +1,51 @@
+package com.pegasus.hospital.dto;
+
+import com.pegasus.hospital.entity.Appointment;
+import com.pegasus.hospital.exception.BookingException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 合并预约中单个请求的结果
+ * 
+ * 成功时appointment不为空，失败时error为失败原因；
+ * outcome为预约结果类型（BookingException.OUTCOME_*），失败时用于还原BookingException
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingResult {
+    
+    /**
+     * 预约记录
+     */
+    private Appointment appointment;
+    
+    /**
+     * 预约结果类型
+     */
+    private String outcome;
+    
+    /**
+     * 失败原因
+     */
+    private String error;
+    
+    public static BookingResult success(Appointment appointment) {
+        return new BookingResult(appointment, BookingException.OUTCOME_SUCCESS, null);
+    }
+    
+    public static BookingResult failure(String outcome, String error) {
+        return new BookingResult(null, outcome, error);
+    }
+    
+    /**
+     * 失败结果对应的异常
+     */
+    public BookingException toException() {
+        return new BookingException(outcome, error);
+    }
+}
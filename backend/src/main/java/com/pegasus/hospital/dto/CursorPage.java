@@ -0,0 +1,47 @@
+package com.pegasus.hospital.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果DTO
+ * 
+ * 按上一页最后一条记录定位下一页，翻页深度不影响查询耗时
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    
+    /**
+     * 当前页记录
+     */
+    private List<T> records;
+    
+    /**
+     * 每页条数
+     */
+    private Integer size;
+    
+    /**
+     * 下一页游标（不透明字符串），没有下一页时为null
+     */
+    private String nextCursor;
+    
+    /**
+     * 是否还有下一页
+     */
+    private Boolean hasMore;
+    
+    /**
+     * 总记录数（仅在请求时统计，否则为null）
+     */
+    private Long total;
+}
@@ -45,4 +45,9 @@ public class DoctorDTO {
      */
     @Size(max = 200, message = "专长描述最多200个字符")
     private String specialty;
+    
+    /**
+     * Excel行号（导入时用于定位失败行）
+     */
+    private Integer rowNum;
 }
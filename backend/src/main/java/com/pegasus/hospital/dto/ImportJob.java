@@ -0,0 +1,84 @@
+package com.pegasus.hospital.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 异步导入任务DTO
+ * 
+ * 导入在后台线程中进行，result随每批完成实时更新
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Data
+public class ImportJob {
+    
+    public static final String STATUS_PENDING = "等待中";
+    public static final String STATUS_RUNNING = "导入中";
+    public static final String STATUS_DONE = "已完成";
+    public static final String STATUS_FAILED = "失败";
+    
+    /**
+     * 任务ID
+     */
+    private String jobId;
+    
+    /**
+     * 导入类型：doctor/schedule
+     */
+    private String type;
+    
+    /**
+     * 上传的文件名
+     */
+    private String fileName;
+    
+    /**
+     * 状态：等待中/导入中/已完成/失败
+     */
+    private volatile String status;
+    
+    /**
+     * 失败原因（整个任务失败时）
+     */
+    private volatile String message;
+    
+    /**
+     * 导入结果（已处理行数、成功/失败行数及失败明细）
+     */
+    private ImportResult result;
+    
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+    
+    /**
+     * 结束时间
+     */
+    private volatile LocalDateTime finishedAt;
+    
+    /**
+     * 是否已结束
+     */
+    public boolean isFinished() {
+        return STATUS_DONE.equals(status) || STATUS_FAILED.equals(status);
+    }
+    
+    /**
+     * 复制当前状态，供查询进度时返回
+     */
+    public ImportJob snapshot() {
+        ImportJob copy = new ImportJob();
+        copy.jobId = jobId;
+        copy.type = type;
+        copy.fileName = fileName;
+        copy.status = status;
+        copy.message = message;
+        copy.result = result.snapshot();
+        copy.createdAt = createdAt;
+        copy.finishedAt = finishedAt;
+        return copy;
+    }
+}
@@ -0,0 +1,112 @@
+package com.pegasus.hospital.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量导入结果DTO
+ * 
+ * 汇总成功/失败行数，并记录每个失败行的行号和原因
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Data
+public class ImportResult {
+    
+    /**
+     * 最多保留的失败明细条数，避免超大文件全部失败时占用过多内存
+     */
+    private static final int MAX_ERRORS = 1000;
+    
+    /**
+     * 总行数
+     */
+    private int total;
+    
+    /**
+     * 成功行数
+     */
+    private int success;
+    
+    /**
+     * 失败行数
+     */
+    private int failed;
+    
+    /**
+     * 失败明细
+     */
+    private List<RowError> errors = new ArrayList<>();
+    
+    /**
+     * 记录成功行
+     */
+    public synchronized void addSuccess(int count) {
+        success += count;
+        total += count;
+    }
+    
+    /**
+     * 记录失败行
+     * 
+     * @param rowNum Excel行号，未知时为null
+     * @param message 失败原因
+     */
+    public synchronized void addFailure(Integer rowNum, String message) {
+        failed++;
+        total++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(rowNum, message));
+        }
+    }
+    
+    /**
+     * 合并另一批的导入结果
+     */
+    public synchronized void merge(ImportResult other) {
+        success += other.success;
+        failed += other.failed;
+        total += other.total;
+        for (RowError error : other.errors) {
+            if (errors.size() >= MAX_ERRORS) {
+                break;
+            }
+            errors.add(error);
+        }
+    }
+    
+    /**
+     * 复制当前结果（导入进行中查询进度时使用）
+     */
+    public synchronized ImportResult snapshot() {
+        ImportResult copy = new ImportResult();
+        copy.total = total;
+        copy.success = success;
+        copy.failed = failed;
+        copy.errors = new ArrayList<>(errors);
+        return copy;
+    }
+    
+    /**
+     * 失败行明细
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        
+        /**
+         * Excel行号
+         */
+        private Integer rowNum;
+        
+        /**
+         * 失败原因
+         */
+        private String message;
+    }
+}
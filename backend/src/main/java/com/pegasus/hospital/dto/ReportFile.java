@@ -0,0 +1,26 @@
+package com.pegasus.hospital.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.file.Path;
+
+/**
+ * 已生成的报告文件
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Data
+@AllArgsConstructor
+public class ReportFile {
+    
+    /**
+     * 文件路径
+     */
+    private Path path;
+    
+    /**
+     * 是否为磁盘缓存中的文件；否则为只属于本次请求的临时文件，发送后由调用方删除
+     */
+    private boolean cached;
+}
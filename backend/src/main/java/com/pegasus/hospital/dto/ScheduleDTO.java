@@ -54,4 +54,9 @@ public class ScheduleDTO {
      */
     @Min(value = 1, message = "最大预约数至少为1")
     private Integer maxPatients = 20;
+    
+    /**
+     * Excel行号（导入时用于定位失败行）
+     */
+    private Integer rowNum;
 }
@@ -0,0 +1,57 @@
+package com.pegasus.hospital.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 预约日统计实体类
+ * 
+ * 按 预约日期 × 医生 × 状态 预聚合的预约量，
+ * 由预约、取消、完成操作增量维护，并由每日压实任务从预约表重算校正
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@TableName("appointment_daily_stats")
+public class AppointmentDailyStats {
+    
+    /**
+     * 预约日期
+     */
+    private LocalDate statDate;
+    
+    /**
+     * 医生ID
+     */
+    private String doctorId;
+    
+    /**
+     * 科室ID（医生所属科室）
+     */
+    private Long deptId;
+    
+    /**
+     * 状态：已预约/已取消/已完成
+     */
+    private String status;
+    
+    /**
+     * 预约数
+     */
+    private Integer cnt;
+    
+    /**
+     * 更新时间
+     */
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,50 @@
+package com.pegasus.hospital.exception;
+
+/**
+ * 预约失败异常
+ * 
+ * 在业务异常的基础上标明失败类型，用于预约指标的outcome标签
+ * 
+ * @author Pegasus Hospital Team
+ */
+public class BookingException extends BusinessException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public static final String OUTCOME_SUCCESS = "success";
+    
+    /**
+     * 号源已满
+     */
+    public static final String OUTCOME_FULL = "full";
+    
+    /**
+     * 重复预约
+     */
+    public static final String OUTCOME_DUPLICATE = "duplicate";
+    
+    /**
+     * 乐观锁冲突
+     */
+    public static final String OUTCOME_CONFLICT = "optimistic-conflict";
+    
+    public static final String OUTCOME_ERROR = "error";
+    
+    private final String outcome;
+    
+    public BookingException(String outcome, String message) {
+        super(message);
+        this.outcome = outcome;
+    }
+    
+    public String getOutcome() {
+        return outcome;
+    }
+    
+    /**
+     * 异常对应的outcome标签，非预约失败异常返回error
+     */
+    public static String outcomeOf(Throwable e) {
+        return e instanceof BookingException booking ? booking.getOutcome() : OUTCOME_ERROR;
+    }
+}
@@ -0,0 +1,116 @@
+package com.pegasus.hospital.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.pegasus.hospital.entity.AppointmentDailyStats;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预约日统计Mapper接口
+ * 
+ * 统计查询只读取预聚合后的行，不再扫描预约表
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Mapper
+public interface AppointmentDailyStatsMapper extends BaseMapper<AppointmentDailyStats> {
+    
+    /**
+     * 增量更新某日某医生某状态的预约数
+     */
+    @Insert("INSERT INTO appointment_daily_stats (stat_date, doctor_id, dept_id, status, cnt) " +
+            "VALUES (#{statDate}, #{doctorId}, #{deptId}, #{status}, #{delta}) " +
+            "ON DUPLICATE KEY UPDATE cnt = cnt + #{delta}, dept_id = #{deptId}")
+    int addCount(@Param("statDate") LocalDate statDate,
+                 @Param("doctorId") String doctorId,
+                 @Param("deptId") Long deptId,
+                 @Param("status") String status,
+                 @Param("delta") int delta);
+    
+    /**
+     * 查询指定日期及以后的统计（加载实时统计用）
+     */
+    @Select("SELECT stat_date, doctor_id, dept_id, status, cnt FROM appointment_daily_stats " +
+            "WHERE stat_date >= #{fromDate} AND cnt != 0")
+    List<AppointmentDailyStats> selectFrom(@Param("fromDate") LocalDate fromDate);
+    
+    /**
+     * 统计表中最晚的日期，没有统计时返回null
+     */
+    @Select("SELECT MAX(stat_date) FROM appointment_daily_stats")
+    LocalDate selectLastStatDate();
+    
+    /**
+     * 预约表中最晚的预约日期，没有预约时返回null
+     */
+    @Select("SELECT DATE(MAX(appt_datetime)) FROM appointment")
+    LocalDate selectLastAppointmentDate();
+    
+    /**
+     * 删除日期范围内的统计（重算前）
+     * 
+     * @param startDate 起始日期（含）
+     * @param endDate 结束日期（不含）
+     */
+    @Delete("DELETE FROM appointment_daily_stats WHERE stat_date >= #{startDate} AND stat_date < #{endDate}")
+    int deleteRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+    
+    /**
+     * 从预约表重算时间范围内的统计
+     * 
+     * INSERT ... SELECT 会对读取到的预约行加共享锁，调用方应按日期分批，缩小每次锁定的范围
+     * 
+     * @param startTime 起始时间（含）
+     * @param endTime 结束时间（不含）
+     */
+    @Insert("INSERT INTO appointment_daily_stats (stat_date, doctor_id, dept_id, status, cnt) " +
+            "SELECT DATE(a.appt_datetime), a.doctor_id, MAX(d.dept_id), a.status, COUNT(*) " +
+            "FROM appointment a " +
+            "LEFT JOIN doctor d ON a.doctor_id = d.doctor_id " +
+            "WHERE a.appt_datetime >= #{startTime} AND a.appt_datetime < #{endTime} " +
+            "GROUP BY DATE(a.appt_datetime), a.doctor_id, a.status")
+    int rebuildRange(@Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
+    
+    /**
+     * 统计各科室预约量（不含已取消）
+     * 
+     * @param startDate 起始日期（含）
+     * @param endDate 结束日期（不含）
+     */
+    @Select("SELECT dept.dept_name, CAST(SUM(s.cnt) AS SIGNED) as count " +
+            "FROM appointment_daily_stats s " +
+            "LEFT JOIN department dept ON s.dept_id = dept.id " +
+            "WHERE s.stat_date >= #{startDate} AND s.stat_date < #{endDate} " +
+            "AND s.status != '已取消' " +
+            "GROUP BY s.dept_id, dept.dept_name " +
+            "HAVING count > 0 " +
+            "ORDER BY count DESC")
+    List<Map<String, Object>> countByDepartment(@Param("startDate") LocalDate startDate,
+                                                 @Param("endDate") LocalDate endDate);
+    
+    /**
+     * 统计医生工作量（不含已取消）
+     * 
+     * @param startDate 起始日期（含）
+     * @param endDate 结束日期（不含）
+     */
+    @Select("SELECT s.doctor_id, d.name as doctor_name, dept.dept_name, CAST(SUM(s.cnt) AS SIGNED) as count " +
+            "FROM appointment_daily_stats s " +
+            "LEFT JOIN doctor d ON s.doctor_id = d.doctor_id " +
+            "LEFT JOIN department dept ON d.dept_id = dept.id " +
+            "WHERE s.stat_date >= #{startDate} AND s.stat_date < #{endDate} " +
+            "AND s.status != '已取消' " +
+            "GROUP BY s.doctor_id, d.name, dept.dept_name " +
+            "HAVING count > 0 " +
+            "ORDER BY count DESC")
+    List<Map<String, Object>> countByDoctor(@Param("startDate") LocalDate startDate,
+                                            @Param("endDate") LocalDate endDate);
+}
@@ -4,57 +4,54 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.pegasus.hospital.entity.Appointment;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 预约Mapper接口
  * 
+ * 预约查询只读取appointment表，患者姓名、医生姓名和科室名称
+ * 由服务层通过名称字典批量补全，避免逐行关联三张表
+ * 
+ * 时间条件统一使用左闭右开区间 [startTime, endTime) 直接比较appt_datetime，
+ * 不对列套用DATE()等函数，以便使用appt_datetime相关索引
+ * 
  * @author Pegasus Hospital Team
  */
 @Mapper
 public interface AppointmentMapper extends BaseMapper<Appointment> {
     
     /**
-     * 根据预约号查询
+     * 根据预约号查询（不含名称）
      */
-    @Select("SELECT a.*, p.name as patient_name, d.name as doctor_name, dept.dept_name " +
-            "FROM appointment a " +
-            "LEFT JOIN patient p ON a.patient_id = p.patient_id " +
-            "LEFT JOIN doctor d ON a.doctor_id = d.doctor_id " +
-            "LEFT JOIN department dept ON d.dept_id = dept.id " +
-            "WHERE a.appt_id = #{apptId}")
+    @Select("SELECT * FROM appointment WHERE appt_id = #{apptId}")
     Appointment selectByApptId(String apptId);
     
     /**
      * 查询患者的预约列表
      */
-    @Select("SELECT a.*, p.name as patient_name, d.name as doctor_name, dept.dept_name " +
-            "FROM appointment a " +
-            "LEFT JOIN patient p ON a.patient_id = p.patient_id " +
-            "LEFT JOIN doctor d ON a.doctor_id = d.doctor_id " +
-            "LEFT JOIN department dept ON d.dept_id = dept.id " +
-            "WHERE a.patient_id = #{patientId} " +
-            "ORDER BY a.appt_datetime DESC")
+    @Select("SELECT * FROM appointment " +
+            "WHERE patient_id = #{patientId} " +
+            "ORDER BY appt_datetime DESC")
     List<Appointment> selectByPatientId(String patientId);
     
     /**
      * 查询医生的预约列表
      */
-    @Select("SELECT a.*, p.name as patient_name, d.name as doctor_name, dept.dept_name " +
-            "FROM appointment a " +
-            "LEFT JOIN patient p ON a.patient_id = p.patient_id " +
-            "LEFT JOIN doctor d ON a.doctor_id = d.doctor_id " +
-            "LEFT JOIN department dept ON d.dept_id = dept.id " +
-            "WHERE a.doctor_id = #{doctorId} " +
-            "AND a.appt_datetime BETWEEN #{startTime} AND #{endTime} " +
-            "ORDER BY a.appt_datetime")
+    @Select("SELECT * FROM appointment " +
+            "WHERE doctor_id = #{doctorId} " +
+            "AND appt_datetime BETWEEN #{startTime} AND #{endTime} " +
+            "ORDER BY appt_datetime")
     List<Appointment> selectByDoctorAndTime(@Param("doctorId") String doctorId,
                                              @Param("startTime") LocalDateTime startTime,
                                              @Param("endTime") LocalDateTime endTime);
@@ -76,69 +73,124 @@ public interface AppointmentMapper extends BaseMapper<Appointment> {
     int countByPatientAndSchedule(@Param("patientId") String patientId, @Param("scheduleId") Long scheduleId);
     
     /**
-     * 分页查询预约记录（管理员用）
+     * 查询一批患者中已在该时段预约的患者ID（合并预约去重）
      */
     @Select("<script>" +
-            "SELECT a.*, p.name as patient_name, d.name as doctor_name, dept.dept_name " +
-            "FROM appointment a " +
-            "LEFT JOIN patient p ON a.patient_id = p.patient_id " +
-            "LEFT JOIN doctor d ON a.doctor_id = d.doctor_id " +
-            "LEFT JOIN department dept ON d.dept_id = dept.id " +
+            "SELECT patient_id FROM appointment " +
+            "WHERE schedule_id = #{scheduleId} AND status = '已预约' AND patient_id IN " +
+            "<foreach collection='patientIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<String> selectBookedPatientIds(@Param("scheduleId") Long scheduleId,
+                                        @Param("patientIds") Collection<String> patientIds);
+    
+    /**
+     * 多行批量插入预约
+     */
+    @Insert("<script>" +
+            "INSERT INTO appointment (appt_id, patient_id, doctor_id, schedule_id, appt_datetime, status) VALUES " +
+            "<foreach collection='appointments' item='a' separator=','>" +
+            "(#{a.apptId}, #{a.patientId}, #{a.doctorId}, #{a.scheduleId}, #{a.apptDatetime}, #{a.status})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("appointments") List<Appointment> appointments);
+    
+    /**
+     * 根据预约号批量查询（不含名称）
+     */
+    @Select("<script>" +
+            "SELECT * FROM appointment WHERE appt_id IN " +
+            "<foreach collection='apptIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Appointment> selectByApptIds(@Param("apptIds") Collection<String> apptIds);
+    
+    /**
+     * 分页查询预约记录（管理员、医生用）
+     * 
+     * @param startTime 起始时间（含），为null时不限
+     * @param endTime 结束时间（不含），为null时不限
+     */
+    @Select("<script>" +
+            "SELECT a.* FROM appointment a " +
             "WHERE 1=1 " +
             "<if test='status != null and status != \"\"'> AND a.status = #{status} </if>" +
-            "<if test='startDate != null'> AND DATE(a.appt_datetime) &gt;= #{startDate} </if>" +
-            "<if test='endDate != null'> AND DATE(a.appt_datetime) &lt;= #{endDate} </if>" +
-            "<if test='deptId != null'> AND d.dept_id = #{deptId} </if>" +
+            "<if test='startTime != null'> AND a.appt_datetime &gt;= #{startTime} </if>" +
+            "<if test='endTime != null'> AND a.appt_datetime &lt; #{endTime} </if>" +
+            "<if test='deptId != null'> AND a.doctor_id IN (SELECT doctor_id FROM doctor WHERE dept_id = #{deptId}) </if>" +
+            "<if test='doctorId != null'> AND a.doctor_id = #{doctorId} </if>" +
             "ORDER BY a.appt_datetime DESC" +
             "</script>")
     IPage<Appointment> selectPageWithDetails(Page<Appointment> page, 
                                               @Param("status") String status,
-                                              @Param("startDate") LocalDate startDate,
-                                              @Param("endDate") LocalDate endDate,
-                                              @Param("deptId") Long deptId);
+                                              @Param("startTime") LocalDateTime startTime,
+                                              @Param("endTime") LocalDateTime endTime,
+                                              @Param("deptId") Long deptId,
+                                              @Param("doctorId") String doctorId);
     
     /**
-     * 统计各科室预约量
+     * 游标分页查询预约记录（管理员、医生用）
+     * 
+     * 按 (appt_datetime, id) 倒序，从游标位置之后开始读取，
+     * 不使用OFFSET，翻到任意深度都只扫描limit行
+     * 
+     * @param cursorTime 上一页最后一条的预约时间，为null时从第一页开始
+     * @param cursorId 上一页最后一条的主键
      */
-    @Select("SELECT dept.dept_name, COUNT(*) as count " +
-            "FROM appointment a " +
-            "LEFT JOIN doctor d ON a.doctor_id = d.doctor_id " +
-            "LEFT JOIN department dept ON d.dept_id = dept.id " +
-            "WHERE DATE(a.appt_datetime) BETWEEN #{startDate} AND #{endDate} " +
-            "AND a.status != '已取消' " +
-            "GROUP BY dept.id " +
-            "ORDER BY count DESC")
-    List<Map<String, Object>> countByDepartment(@Param("startDate") LocalDate startDate,
-                                                 @Param("endDate") LocalDate endDate);
+    @Select("<script>" +
+            "SELECT a.* FROM appointment a " +
+            "WHERE 1=1 " +
+            "<if test='status != null and status != \"\"'> AND a.status = #{status} </if>" +
+            "<if test='startTime != null'> AND a.appt_datetime &gt;= #{startTime} </if>" +
+            "<if test='endTime != null'> AND a.appt_datetime &lt; #{endTime} </if>" +
+            "<if test='deptId != null'> AND a.doctor_id IN (SELECT doctor_id FROM doctor WHERE dept_id = #{deptId}) </if>" +
+            "<if test='doctorId != null'> AND a.doctor_id = #{doctorId} </if>" +
+            "<if test='cursorTime != null'> AND a.appt_datetime &lt;= #{cursorTime} " +
+            "AND (a.appt_datetime &lt; #{cursorTime} OR a.id &lt; #{cursorId}) </if>" +
+            "ORDER BY a.appt_datetime DESC, a.id DESC " +
+            "LIMIT #{limit}" +
+            "</script>")
+    List<Appointment> selectSeekPage(@Param("status") String status,
+                                      @Param("startTime") LocalDateTime startTime,
+                                      @Param("endTime") LocalDateTime endTime,
+                                      @Param("deptId") Long deptId,
+                                      @Param("doctorId") String doctorId,
+                                      @Param("cursorTime") LocalDateTime cursorTime,
+                                      @Param("cursorId") Long cursorId,
+                                      @Param("limit") int limit);
     
     /**
-     * 统计医生工作量
+     * 统计符合条件的预约记录数（游标分页按需统计总数）
      */
-    @Select("SELECT d.doctor_id, d.name as doctor_name, dept.dept_name, COUNT(*) as count " +
-            "FROM appointment a " +
-            "LEFT JOIN doctor d ON a.doctor_id = d.doctor_id " +
-            "LEFT JOIN department dept ON d.dept_id = dept.id " +
-            "WHERE DATE(a.appt_datetime) BETWEEN #{startDate} AND #{endDate} " +
-            "AND a.status != '已取消' " +
-            "GROUP BY d.doctor_id " +
-            "ORDER BY count DESC")
-    List<Map<String, Object>> countByDoctor(@Param("startDate") LocalDate startDate,
-                                            @Param("endDate") LocalDate endDate);
+    @Select("<script>" +
+            "SELECT COUNT(*) FROM appointment a " +
+            "WHERE 1=1 " +
+            "<if test='status != null and status != \"\"'> AND a.status = #{status} </if>" +
+            "<if test='startTime != null'> AND a.appt_datetime &gt;= #{startTime} </if>" +
+            "<if test='endTime != null'> AND a.appt_datetime &lt; #{endTime} </if>" +
+            "<if test='deptId != null'> AND a.doctor_id IN (SELECT doctor_id FROM doctor WHERE dept_id = #{deptId}) </if>" +
+            "<if test='doctorId != null'> AND a.doctor_id = #{doctorId} </if>" +
+            "</script>")
+    long countForPage(@Param("status") String status,
+                      @Param("startTime") LocalDateTime startTime,
+                      @Param("endTime") LocalDateTime endTime,
+                      @Param("deptId") Long deptId,
+                      @Param("doctorId") String doctorId);
     
     /**
-     * 查询导出数据
+     * 流式读取导出数据
+     * 
+     * 使用只进结果集并将fetchSize设为Integer.MIN_VALUE，MySQL驱动逐行返回结果，
+     * 不会把整个结果集加载到内存
      */
     @Select("<script>" +
-            "SELECT a.*, p.name as patient_name, d.name as doctor_name, dept.dept_name " +
-            "FROM appointment a " +
-            "LEFT JOIN patient p ON a.patient_id = p.patient_id " +
-            "LEFT JOIN doctor d ON a.doctor_id = d.doctor_id " +
-            "LEFT JOIN department dept ON d.dept_id = dept.id " +
+            "SELECT a.* FROM appointment a " +
             "WHERE 1=1 " +
-            "<if test='startDate != null'> AND DATE(a.appt_datetime) &gt;= #{startDate} </if>" +
-            "<if test='endDate != null'> AND DATE(a.appt_datetime) &lt;= #{endDate} </if>" +
+            "<if test='startTime != null'> AND a.appt_datetime &gt;= #{startTime} </if>" +
+            "<if test='endTime != null'> AND a.appt_datetime &lt; #{endTime} </if>" +
             "ORDER BY a.appt_datetime DESC" +
             "</script>")
-    List<Appointment> selectForExport(@Param("startDate") LocalDate startDate,
-                                       @Param("endDate") LocalDate endDate);
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(Appointment.class)
+    void streamForExport(@Param("startTime") LocalDateTime startTime,
+                         @Param("endTime") LocalDateTime endTime,
+                         ResultHandler<Appointment> handler);
 }
@@ -8,6 +8,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -60,4 +61,13 @@ public interface DoctorMapper extends BaseMapper<Doctor> {
             "ORDER BY d.doctor_id" +
             "</script>")
     IPage<Doctor> selectPageWithDeptName(Page<Doctor> page, @Param("deptId") Long deptId, @Param("name") String name);
+    
+    /**
+     * 批量查询医生姓名和科室（仅返回医生ID、姓名和科室ID）
+     */
+    @Select("<script>" +
+            "SELECT doctor_id, name, dept_id FROM doctor WHERE doctor_id IN " +
+            "<foreach collection='doctorIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Doctor> selectNamesByDoctorIds(@Param("doctorIds") Collection<String> doctorIds);
 }
@@ -3,8 +3,12 @@ package com.pegasus.hospital.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.pegasus.hospital.entity.Patient;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * 患者Mapper接口
  * 
@@ -30,4 +34,13 @@ public interface PatientMapper extends BaseMapper<Patient> {
      */
     @Select("SELECT MAX(patient_id) FROM patient")
     String selectMaxPatientId();
+    
+    /**
+     * 批量查询患者姓名（仅返回患者ID和姓名）
+     */
+    @Select("<script>" +
+            "SELECT patient_id, name FROM patient WHERE patient_id IN " +
+            "<foreach collection='patientIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Patient> selectNamesByPatientIds(@Param("patientIds") Collection<String> patientIds);
 }
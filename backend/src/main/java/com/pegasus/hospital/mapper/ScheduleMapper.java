@@ -2,6 +2,7 @@ package com.pegasus.hospital.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.pegasus.hospital.entity.Schedule;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -62,6 +63,32 @@ public interface ScheduleMapper extends BaseMapper<Schedule> {
             "WHERE id = #{id} AND version = #{version} AND booked_count < max_patients")
     int incrementBookedCount(@Param("id") Long id, @Param("version") Integer version);
     
+    /**
+     * 原子更新预约数（+1）
+     * 不校验version，仅依赖剩余号源条件，由数据库行锁裁决并发
+     * version仍然递增，使管理员修改排班时的乐观锁继续生效
+     */
+    @Update("UPDATE schedule SET booked_count = booked_count + 1, version = version + 1 " +
+            "WHERE id = #{id} AND booked_count < max_patients")
+    int incrementBookedCountAtomic(@Param("id") Long id);
+    
+    /**
+     * 原子更新预约数（+count），剩余号源不足count时不更新
+     * 合并预约时一次占用多个号源
+     */
+    @Update("UPDATE schedule SET booked_count = booked_count + #{count}, version = version + 1 " +
+            "WHERE id = #{id} AND booked_count + #{count} <= max_patients")
+    int incrementBookedCountBy(@Param("id") Long id, @Param("count") int count);
+    
+    /**
+     * 乐观锁更新预约数（+count），version不匹配或剩余号源不足count时不更新
+     * 乐观锁模式下合并预约时一次占用多个号源
+     */
+    @Update("UPDATE schedule SET booked_count = booked_count + #{count}, version = version + 1 " +
+            "WHERE id = #{id} AND version = #{version} AND booked_count + #{count} <= max_patients")
+    int incrementBookedCountByVersion(@Param("id") Long id, @Param("count") int count,
+                                      @Param("version") Integer version);
+    
     /**
      * 减少预约数（取消预约时）
      */
@@ -82,4 +109,32 @@ public interface ScheduleMapper extends BaseMapper<Schedule> {
     List<Schedule> selectByDoctorAndDateRange(@Param("doctorId") String doctorId, 
                                                @Param("startDate") LocalDate startDate,
                                                @Param("endDate") LocalDate endDate);
+    
+    /**
+     * 查询医生某段时间已有排班的日期和开始时间（批量导入去重用）
+     */
+    @Select("SELECT work_date, start_time FROM schedule " +
+            "WHERE doctor_id = #{doctorId} " +
+            "AND work_date BETWEEN #{startDate} AND #{endDate}")
+    List<Schedule> selectSlotKeysByDoctorAndDateRange(@Param("doctorId") String doctorId,
+                                                      @Param("startDate") LocalDate startDate,
+                                                      @Param("endDate") LocalDate endDate);
+    
+    /**
+     * 多行批量插入排班
+     */
+    @Insert("<script>" +
+            "INSERT INTO schedule (doctor_id, work_date, start_time, end_time, max_patients, booked_count, version) VALUES " +
+            "<foreach collection='schedules' item='s' separator=','>" +
+            "(#{s.doctorId}, #{s.workDate}, #{s.startTime}, #{s.endTime}, #{s.maxPatients}, 0, 0)" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("schedules") List<Schedule> schedules);
+    
+    /**
+     * 查询指定日期及以后的排班容量（用于重建内存号源库存）
+     */
+    @Select("SELECT id, doctor_id, work_date, max_patients, booked_count FROM schedule " +
+            "WHERE work_date >= #{fromDate}")
+    List<Schedule> selectInventoryFrom(@Param("fromDate") LocalDate fromDate);
 }
@@ -0,0 +1,82 @@
+package com.pegasus.hospital.security;
+
+import com.pegasus.hospital.exception.BusinessException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * 当前请求的登录身份
+ * 
+ * 由JwtAuthenticationFilter在请求开始时验证令牌并放入请求属性，
+ * 控制器和服务直接读取，不再解析令牌
+ * 
+ * @author Pegasus Hospital Team
+ */
+public class AuthContext {
+    
+    /**
+     * 保存登录身份的请求属性名
+     */
+    public static final String ATTRIBUTE = AuthPrincipal.class.getName();
+    
+    public static final String TYPE_PATIENT = "patient";
+    
+    public static final String TYPE_DOCTOR = "doctor";
+    
+    public static final String TYPE_ADMIN = "admin";
+    
+    /**
+     * 当前登录身份
+     * 
+     * @return 登录身份，未携带令牌或不在请求线程中时返回null
+     */
+    public static AuthPrincipal current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        return (AuthPrincipal) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+    
+    /**
+     * 当前登录身份，未登录时抛出异常
+     */
+    public static AuthPrincipal require() {
+        AuthPrincipal principal = current();
+        if (principal == null) {
+            throw new BusinessException(401, "请先登录");
+        }
+        return principal;
+    }
+    
+    /**
+     * 当前登录的患者ID，未登录或登录身份不是患者时抛出异常
+     */
+    public static String requirePatientId() {
+        AuthPrincipal principal = require();
+        if (!TYPE_PATIENT.equals(principal.userType())) {
+            throw new BusinessException(403, "仅患者账号可以访问");
+        }
+        return principal.userId();
+    }
+    
+    /**
+     * 当前登录身份，未登录或登录身份不是指定类型之一时抛出异常
+     */
+    public static AuthPrincipal requireType(String... userTypes) {
+        AuthPrincipal principal = require();
+        for (String userType : userTypes) {
+            if (userType.equals(principal.userType())) {
+                return principal;
+            }
+        }
+        throw new BusinessException(403, "无权访问");
+    }
+    
+    /**
+     * 当前登录的管理员，未登录或登录身份不是管理员时抛出异常
+     */
+    public static AuthPrincipal requireAdmin() {
+        return requireType(TYPE_ADMIN);
+    }
+}
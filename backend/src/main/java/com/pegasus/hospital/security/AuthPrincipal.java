@@ -0,0 +1,16 @@
+package com.pegasus.hospital.security;
+
+/**
+ * 令牌中的登录身份
+ * 
+ * 由JwtUtil验证令牌后一次性提取所有身份字段
+ * 
+ * @param userId 用户ID（患者ID/医生ID/管理员用户名）
+ * @param userType 用户类型（patient/doctor/admin）
+ * @param name 用户姓名
+ * @param expiresAt 令牌过期时间（毫秒时间戳）
+ * 
+ * @author Pegasus Hospital Team
+ */
+public record AuthPrincipal(String userId, String userType, String name, long expiresAt) {
+}
@@ -0,0 +1,104 @@
+package com.pegasus.hospital.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pegasus.hospital.dto.Result;
+import com.pegasus.hospital.util.JwtUtil;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JWT认证过滤器
+ * 
+ * 每个请求只验证一次Authorization: Bearer令牌，验证通过后把不可变的登录身份放入请求属性，
+ * 之后由AuthContext读取。未携带令牌的请求按匿名放行，令牌无效或过期时返回401。
+ * 
+ * 管理接口（/admin/**）只接受管理员令牌：未登录返回401，其他身份返回403
+ * 
+ * 登录和注册接口不检查令牌，避免前端残留的过期令牌妨碍重新登录
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Component
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    
+    private static final String BEARER_PREFIX = "Bearer ";
+    
+    private static final String ADMIN_PATH_PREFIX = "/admin/";
+    
+    @Autowired
+    private JwtUtil jwtUtil;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = path(request);
+        return path.startsWith("/auth/") || path.equals("/patient/register");
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean adminOnly = path(request).startsWith(ADMIN_PATH_PREFIX);
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.startsWith(BEARER_PREFIX)) {
+            if (adminOnly) {
+                writeUnauthorized(response, "请先登录");
+                return;
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        AuthPrincipal principal;
+        try {
+            principal = jwtUtil.parsePrincipal(header.substring(BEARER_PREFIX.length()).trim());
+        } catch (ExpiredJwtException e) {
+            writeUnauthorized(response, "登录已过期，请重新登录");
+            return;
+        } catch (JwtException | IllegalArgumentException e) {
+            writeUnauthorized(response, "无效的登录凭证");
+            return;
+        }
+        
+        if (adminOnly && !AuthContext.TYPE_ADMIN.equals(principal.userType())) {
+            writeResult(response, HttpServletResponse.SC_FORBIDDEN, Result.error(403, "无权访问"));
+            return;
+        }
+        
+        request.setAttribute(AuthContext.ATTRIBUTE, principal);
+        filterChain.doFilter(request, response);
+    }
+    
+    /**
+     * 去掉上下文路径后的请求路径，使用容器规范化后的路径，避免 //admin、/admin;x 之类的写法绕过检查
+     */
+    private static String path(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        return pathInfo == null ? request.getServletPath() : request.getServletPath() + pathInfo;
+    }
+    
+    private void writeUnauthorized(HttpServletResponse response, String message) throws IOException {
+        writeResult(response, HttpServletResponse.SC_UNAUTHORIZED, Result.unauthorized(message));
+    }
+    
+    private void writeResult(HttpServletResponse response, int status, Result<?> result) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), result);
+    }
+}
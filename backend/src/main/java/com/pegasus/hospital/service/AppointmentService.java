@@ -4,10 +4,13 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.pegasus.hospital.dto.AppointmentRequest;
+import com.pegasus.hospital.dto.BookingResult;
+import com.pegasus.hospital.dto.CursorPage;
 import com.pegasus.hospital.entity.Appointment;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * 预约服务接口
@@ -24,6 +27,15 @@ public interface AppointmentService extends IService<Appointment> {
      */
     Appointment book(AppointmentRequest request);
     
+    /**
+     * 合并预约同一排班的多个请求
+     * 一次占用所有号源、批量插入预约记录；单个请求重复预约或号源不足时只影响该请求
+     * 
+     * @param requests 同一排班的预约请求
+     * @return 与请求一一对应的结果
+     */
+    List<BookingResult> bookBatch(List<AppointmentRequest> requests);
+    
     /**
      * 取消预约
      * 
@@ -50,11 +62,29 @@ public interface AppointmentService extends IService<Appointment> {
     
     /**
      * 分页查询预约记录
+     * 
+     * @param doctorId 只查询该医生接诊的预约，为null时不限
      */
-    IPage<Appointment> getPage(Page<Appointment> page, String status, LocalDate startDate, LocalDate endDate, Long deptId);
+    IPage<Appointment> getPage(Page<Appointment> page, String status, LocalDate startDate, LocalDate endDate,
+                               Long deptId, String doctorId);
     
     /**
-     * 获取导出数据
+     * 游标分页查询预约记录（按预约时间倒序）
+     * 
+     * @param cursor 上一页返回的游标，为空时查询第一页
+     * @param size 每页条数
+     * @param doctorId 只查询该医生接诊的预约，为null时不限
+     * @param withTotal 是否统计总记录数
+     */
+    CursorPage<Appointment> getPageByCursor(String cursor, int size, String status, LocalDate startDate,
+                                            LocalDate endDate, Long deptId, String doctorId, boolean withTotal);
+    
+    /**
+     * 流式读取导出数据
+     * 
+     * 按批回调，每批已补全名称；内存占用只与批大小有关，与导出总量无关
+     * 
+     * @param consumer 每批预约记录的处理函数
      */
-    List<Appointment> getForExport(LocalDate startDate, LocalDate endDate);
+    void exportForEach(LocalDate startDate, LocalDate endDate, Consumer<List<Appointment>> consumer);
 }
@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.pegasus.hospital.dto.DoctorDTO;
+import com.pegasus.hospital.dto.ImportResult;
 import com.pegasus.hospital.dto.LoginResponse;
 import com.pegasus.hospital.entity.Doctor;
 
@@ -53,6 +54,8 @@ public interface DoctorService extends IService<Doctor> {
     
     /**
      * 批量导入医生
+     * 
+     * 科室、医生ID一次查询完成校验，预先租用ID区间，分批写入，逐行返回失败原因
      */
-    int batchImport(List<DoctorDTO> doctors);
+    ImportResult batchImport(List<DoctorDTO> doctors);
 }
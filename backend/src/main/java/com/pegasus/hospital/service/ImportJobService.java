@@ -0,0 +1,33 @@
+package com.pegasus.hospital.service;
+
+import com.pegasus.hospital.dto.ImportJob;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * 异步导入任务服务接口
+ * 
+ * @author Pegasus Hospital Team
+ */
+public interface ImportJobService {
+    
+    /**
+     * 提交医生导入任务
+     * 
+     * @return 任务信息（含任务ID），导入在后台进行
+     */
+    ImportJob submitDoctorImport(MultipartFile file);
+    
+    /**
+     * 提交排班导入任务
+     * 
+     * @return 任务信息（含任务ID），导入在后台进行
+     */
+    ImportJob submitScheduleImport(MultipartFile file);
+    
+    /**
+     * 查询任务进度
+     * 
+     * @return 任务当前状态，任务不存在或已过期时返回null
+     */
+    ImportJob getJob(String jobId);
+}
@@ -0,0 +1,39 @@
+package com.pegasus.hospital.service;
+
+import com.pegasus.hospital.dto.ReportFile;
+
+import java.time.YearMonth;
+
+/**
+ * 统计报告服务接口
+ * 
+ * @author Pegasus Hospital Team
+ */
+public interface ReportService {
+    
+    /**
+     * 获取月度统计报告PDF
+     * 
+     * 已结束的月份从磁盘缓存读取，当月报告每次重新生成
+     * 
+     * @param month 月份
+     * @return 报告文件
+     */
+    ReportFile getMonthlyReport(YearMonth month);
+    
+    /**
+     * 删除指定月份及以后的月度报告缓存（重算统计后调用）
+     * 
+     * @param fromMonth 起始月份（含）
+     * @return 删除的缓存文件数
+     */
+    int evictMonthlyReports(YearMonth fromMonth);
+    
+    /**
+     * 删除单个月份的月度报告缓存（已结束月份的预约状态变化后调用）
+     * 
+     * @param month 月份
+     * @return 删除的缓存文件数
+     */
+    int evictMonthlyReport(YearMonth month);
+}
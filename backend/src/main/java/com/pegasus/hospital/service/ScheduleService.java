@@ -1,6 +1,7 @@
 package com.pegasus.hospital.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.pegasus.hospital.dto.ImportResult;
 import com.pegasus.hospital.dto.ScheduleDTO;
 import com.pegasus.hospital.entity.Schedule;
 
@@ -46,14 +47,21 @@ public interface ScheduleService extends IService<Schedule> {
     
     /**
      * 批量导入排班
+     * 
+     * 在内存中校验和去重后分批多行插入，逐行返回失败原因
      */
-    int batchImport(List<ScheduleDTO> schedules);
+    ImportResult batchImport(List<ScheduleDTO> schedules);
     
     /**
-     * 增加预约数（使用乐观锁）
+     * 增加预约数（乐观锁或原子更新，取决于 booking.lock-mode）
      */
     boolean incrementBookedCount(Long scheduleId);
     
+    /**
+     * 一次增加多个预约数（合并预约，乐观锁或原子更新，取决于 booking.lock-mode）
+     */
+    boolean incrementBookedCountBy(Long scheduleId, int count);
+    
     /**
      * 减少预约数
      */
@@ -0,0 +1,60 @@
+package com.pegasus.hospital.service;
+
+import com.pegasus.hospital.entity.Appointment;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预约统计服务接口
+ * 
+ * @author Pegasus Hospital Team
+ */
+public interface StatisticsService {
+    
+    /**
+     * 记录预约状态变化（在预约、取消、完成的事务中调用）
+     * 
+     * @param appointment 预约记录
+     * @param fromStatus 原状态，新预约时为null
+     * @param toStatus 新状态
+     */
+    void recordStatusChange(Appointment appointment, String fromStatus, String toStatus);
+    
+    /**
+     * 记录一批新预约（合并预约时调用），同日同医生的预约合并为一次更新
+     */
+    void recordBooked(List<Appointment> appointments);
+    
+    /**
+     * 统计各科室预约量
+     * 
+     * @param startDate 起始日期（含）
+     * @param endDate 结束日期（不含）
+     */
+    List<Map<String, Object>> countByDepartment(LocalDate startDate, LocalDate endDate);
+    
+    /**
+     * 统计医生工作量
+     * 
+     * @param startDate 起始日期（含）
+     * @param endDate 结束日期（不含）
+     */
+    List<Map<String, Object>> countByDoctor(LocalDate startDate, LocalDate endDate);
+    
+    /**
+     * 指定日期的实时统计（内存计数，不查询数据库）
+     */
+    Map<String, Object> getLiveStatistics(LocalDate date);
+    
+    /**
+     * 从预约表重算指定日期及以后的统计
+     * 
+     * 按日期分批，每批在独立的事务中提交；全部完成后重新加载实时统计。
+     * 已缓存的月度报告不会自动更新，调用方需调用 ReportService#evictMonthlyReports
+     * 
+     * @return 重算后的统计行数
+     */
+    int rebuildFrom(LocalDate fromDate);
+}
@@ -3,71 +3,122 @@ package com.pegasus.hospital.service.impl;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.pegasus.hospital.cache.NameDictionary;
+import com.pegasus.hospital.cache.SlotInventory;
 import com.pegasus.hospital.dto.AppointmentRequest;
+import com.pegasus.hospital.dto.BookingResult;
+import com.pegasus.hospital.dto.CursorPage;
 import com.pegasus.hospital.entity.Appointment;
-import com.pegasus.hospital.entity.Schedule;
+import com.pegasus.hospital.exception.BookingException;
 import com.pegasus.hospital.exception.BusinessException;
 import com.pegasus.hospital.mapper.AppointmentMapper;
 import com.pegasus.hospital.service.AppointmentService;
 import com.pegasus.hospital.service.ScheduleService;
+import com.pegasus.hospital.service.StatisticsService;
 import com.pegasus.hospital.util.IdGenerator;
+import com.pegasus.hospital.util.SequenceAllocator;
+import com.pegasus.hospital.util.TransactionUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 预约服务实现类
  * 
  * 预约功能使用乐观锁进行并发控制，避免超卖
+ * 号源先在内存库存中预占，号源已满的请求无需访问数据库即被拒绝
+ * 查询结果中的患者、医生、科室名称由名称字典批量补全
  * 
  * @author Pegasus Hospital Team
  */
 @Service
 public class AppointmentServiceImpl extends ServiceImpl<AppointmentMapper, Appointment> implements AppointmentService {
     
+    /**
+     * 流式导出时每批补全名称的记录数
+     */
+    private static final int EXPORT_CHUNK_SIZE = 500;
+    
     @Autowired
     private ScheduleService scheduleService;
     
+    @Autowired
+    private SlotInventory slotInventory;
+    
+    @Autowired
+    private SequenceAllocator sequenceAllocator;
+    
+    @Autowired
+    private NameDictionary nameDictionary;
+    
+    @Autowired
+    private StatisticsService statisticsService;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    /**
+     * 预约号每次租用的号段长度
+     */
+    @Value("${id-sequence.appt-step:20}")
+    private int apptSequenceStep;
+    
     @Override
     @Transactional
     public Appointment book(AppointmentRequest request) {
-        // 1. 检查排班是否存在
-        Schedule schedule = scheduleService.getById(request.getScheduleId());
-        if (schedule == null) {
+        return timed("book", () -> doBook(request));
+    }
+    
+    private Appointment doBook(AppointmentRequest request) {
+        // 1. 检查排班是否存在（内存号源库存，必要时从数据库加载）
+        SlotInventory.Slot slot = slotInventory.get(request.getScheduleId());
+        if (slot == null) {
             throw new BusinessException("排班不存在");
         }
         
         // 2. 检查排班日期是否已过
-        if (schedule.getWorkDate().isBefore(LocalDate.now())) {
+        if (slot.getWorkDate().isBefore(LocalDate.now())) {
             throw new BusinessException("不能预约已过期的排班");
         }
         
-        // 3. 检查是否已满
-        if (schedule.getBookedCount() >= schedule.getMaxPatients()) {
-            throw new BusinessException("该时段号源已满");
+        // 3. 在内存中预占号源，号源已满时不再访问数据库；事务未提交时归还预占的号源
+        if (!slotInventory.tryReserve(request.getScheduleId())) {
+            throw new BookingException(BookingException.OUTCOME_FULL, "该时段号源已满");
         }
         
         // 4. 检查患者是否已在该时段预约
         int existCount = baseMapper.countByPatientAndSchedule(request.getPatientId(), request.getScheduleId());
         if (existCount > 0) {
-            throw new BusinessException("您已在该时段预约，请勿重复预约");
+            throw new BookingException(BookingException.OUTCOME_DUPLICATE, "您已在该时段预约，请勿重复预约");
         }
         
         // 5. 使用乐观锁增加预约数（并发控制关键点）
         boolean success = scheduleService.incrementBookedCount(request.getScheduleId());
         if (!success) {
-            throw new BusinessException("预约失败，请重试");
+            throw new BookingException(BookingException.OUTCOME_CONFLICT, "预约失败，请重试");
         }
         
         // 6. 生成预约号
-        String datePrefix = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
-        Integer maxSeq = baseMapper.selectMaxDailySeq(datePrefix);
-        String apptId = IdGenerator.generateNextApptId(maxSeq != null ? maxSeq : 0);
+        String apptId = nextApptId(LocalDate.now());
         
         // 7. 创建预约记录
         Appointment appointment = Appointment.builder()
@@ -80,13 +131,146 @@ public class AppointmentServiceImpl extends ServiceImpl<AppointmentMapper, Appoi
                 .build();
         
         save(appointment);
+        statisticsService.recordStatusChange(appointment, null, Appointment.STATUS_BOOKED);
+        
+        return nameDictionary.fill(baseMapper.selectByApptId(apptId));
+    }
+    
+    @Override
+    @Transactional
+    public List<BookingResult> bookBatch(List<AppointmentRequest> requests) {
+        meterRegistry.summary("hospital.appointment.batch.size").record(requests.size());
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<BookingResult> results;
+        try {
+            results = doBookBatch(requests);
+        } catch (RuntimeException e) {
+            // 整批失败时由调用方逐个预约，每个请求的指标在单个预约中记录
+            stopBatchTimer(sample, BookingException.outcomeOf(e));
+            throw e;
+        }
+        TransactionUtil.afterCommit(() -> {
+            stopBatchTimer(sample, BookingException.OUTCOME_SUCCESS);
+            // 每个请求记录一次预约指标，与未合并时的 operation=book 口径一致
+            results.forEach(result -> stopTimer(sample, "book", result.getOutcome()));
+        });
+        TransactionUtil.afterRollback(() -> stopBatchTimer(sample, BookingException.OUTCOME_ERROR));
+        return results;
+    }
+    
+    private List<BookingResult> doBookBatch(List<AppointmentRequest> requests) {
+        Long scheduleId = requests.get(0).getScheduleId();
+        
+        // 1. 检查排班（对整批请求相同）
+        SlotInventory.Slot slot = slotInventory.get(scheduleId);
+        if (slot == null) {
+            throw new BusinessException("排班不存在");
+        }
+        if (slot.getWorkDate().isBefore(LocalDate.now())) {
+            throw new BusinessException("不能预约已过期的排班");
+        }
+        
+        // 2. 逐个去重（已在该时段预约或同批次重复）并在内存中预占号源
+        List<BookingResult> results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        Set<String> patientIds = new HashSet<>();
+        requests.forEach(r -> patientIds.add(r.getPatientId()));
+        Set<String> bookedPatients = new HashSet<>(baseMapper.selectBookedPatientIds(scheduleId, patientIds));
+        
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            String patientId = requests.get(i).getPatientId();
+            if (bookedPatients.contains(patientId)) {
+                results.set(i, BookingResult.failure(BookingException.OUTCOME_DUPLICATE, "您已在该时段预约，请勿重复预约"));
+            } else if (!slotInventory.tryReserve(scheduleId)) {
+                // 未占到号源的患者不计入已预约，同批次的下一个请求仍按号源已满处理
+                results.set(i, BookingResult.failure(BookingException.OUTCOME_FULL, "该时段号源已满"));
+            } else {
+                bookedPatients.add(patientId);
+                accepted.add(i);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return results;
+        }
+        int count = accepted.size();
         
-        return baseMapper.selectByApptId(apptId);
+        // 3. 一次更新占用所有号源
+        scheduleService.incrementBookedCountBy(scheduleId, count);
+        
+        // 4. 批量插入预约记录
+        LocalDate today = LocalDate.now();
+        List<Appointment> appointments = new ArrayList<>(count);
+        for (int i : accepted) {
+            AppointmentRequest request = requests.get(i);
+            appointments.add(Appointment.builder()
+                    .apptId(nextApptId(today))
+                    .patientId(request.getPatientId())
+                    .doctorId(request.getDoctorId())
+                    .scheduleId(scheduleId)
+                    .apptDatetime(request.getApptDatetime())
+                    .status(Appointment.STATUS_BOOKED)
+                    .build());
+        }
+        baseMapper.insertBatch(appointments);
+        statisticsService.recordBooked(appointments);
+        
+        // 5. 回读并补全名称
+        List<Appointment> rows = baseMapper.selectByApptIds(appointments.stream().map(Appointment::getApptId).toList());
+        nameDictionary.fill(rows);
+        Map<String, Appointment> saved = new HashMap<>();
+        rows.forEach(row -> saved.put(row.getApptId(), row));
+        for (int k = 0; k < count; k++) {
+            results.set(accepted.get(k), BookingResult.success(saved.get(appointments.get(k).getApptId())));
+        }
+        return results;
+    }
+    
+    /**
+     * 记录预约操作耗时（hospital.appointment，按operation和outcome区分）
+     * 成功时在事务提交后记录，耗时包含提交
+     */
+    private <T> T timed(String operation, Supplier<T> action) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            T result = action.get();
+            TransactionUtil.afterCommit(() -> stopTimer(sample, operation, BookingException.OUTCOME_SUCCESS));
+            TransactionUtil.afterRollback(() -> stopTimer(sample, operation, BookingException.OUTCOME_ERROR));
+            return result;
+        } catch (RuntimeException e) {
+            stopTimer(sample, operation, BookingException.outcomeOf(e));
+            throw e;
+        }
+    }
+    
+    private void stopTimer(Timer.Sample sample, String operation, String outcome) {
+        sample.stop(meterRegistry.timer("hospital.appointment", "operation", operation, "outcome", outcome));
+    }
+    
+    /**
+     * 记录整批合并预约的耗时（hospital.appointment.batch）
+     */
+    private void stopBatchTimer(Timer.Sample sample, String outcome) {
+        sample.stop(meterRegistry.timer("hospital.appointment.batch", "outcome", outcome));
+    }
+    
+    /**
+     * 生成预约号（从内存号段分配，当日序列首次创建时才查询已有最大序号）
+     */
+    private String nextApptId(LocalDate today) {
+        long seq = sequenceAllocator.nextDaily(IdGenerator.APPT_SEQUENCE, today, apptSequenceStep, () -> {
+            Integer maxSeq = baseMapper.selectMaxDailySeq(today.format(DateTimeFormatter.BASIC_ISO_DATE));
+            return (maxSeq != null ? maxSeq : 0) + 1;
+        });
+        return IdGenerator.formatApptId(today, seq);
     }
     
     @Override
     @Transactional
     public boolean cancel(String apptId, String reason) {
+        return timed("cancel", () -> doCancel(apptId, reason));
+    }
+    
+    private boolean doCancel(String apptId, String reason) {
         // 1. 查询预约
         Appointment appointment = baseMapper.selectByApptId(apptId);
         if (appointment == null) {
@@ -107,6 +291,7 @@ public class AppointmentServiceImpl extends ServiceImpl<AppointmentMapper, Appoi
         appointment.setStatus(Appointment.STATUS_CANCELLED);
         appointment.setCancelReason(reason);
         updateById(appointment);
+        statisticsService.recordStatusChange(appointment, Appointment.STATUS_BOOKED, Appointment.STATUS_CANCELLED);
         
         // 5. 释放号源
         scheduleService.decrementBookedCount(appointment.getScheduleId());
@@ -127,26 +312,105 @@ public class AppointmentServiceImpl extends ServiceImpl<AppointmentMapper, Appoi
         }
         
         appointment.setStatus(Appointment.STATUS_COMPLETED);
-        return updateById(appointment);
+        boolean updated = updateById(appointment);
+        statisticsService.recordStatusChange(appointment, Appointment.STATUS_BOOKED, Appointment.STATUS_COMPLETED);
+        return updated;
     }
     
     @Override
     public Appointment getByApptId(String apptId) {
-        return baseMapper.selectByApptId(apptId);
+        return nameDictionary.fill(baseMapper.selectByApptId(apptId));
     }
     
     @Override
     public List<Appointment> getByPatientId(String patientId) {
-        return baseMapper.selectByPatientId(patientId);
+        List<Appointment> appointments = baseMapper.selectByPatientId(patientId);
+        nameDictionary.fill(appointments);
+        return appointments;
     }
     
     @Override
-    public IPage<Appointment> getPage(Page<Appointment> page, String status, LocalDate startDate, LocalDate endDate, Long deptId) {
-        return baseMapper.selectPageWithDetails(page, status, startDate, endDate, deptId);
+    public IPage<Appointment> getPage(Page<Appointment> page, String status, LocalDate startDate, LocalDate endDate,
+                                      Long deptId, String doctorId) {
+        IPage<Appointment> result = baseMapper.selectPageWithDetails(page, status, startOf(startDate), endOf(endDate),
+                deptId, doctorId);
+        nameDictionary.fill(result.getRecords());
+        return result;
     }
     
     @Override
-    public List<Appointment> getForExport(LocalDate startDate, LocalDate endDate) {
-        return baseMapper.selectForExport(startDate, endDate);
+    public CursorPage<Appointment> getPageByCursor(String cursor, int size, String status, LocalDate startDate,
+                                                   LocalDate endDate, Long deptId, String doctorId, boolean withTotal) {
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            // 游标格式：Base64URL("预约时间|主键")
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = decoded.indexOf('|');
+                cursorTime = LocalDateTime.parse(decoded.substring(0, sep));
+                cursorId = Long.parseLong(decoded.substring(sep + 1));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new BusinessException("无效的分页游标");
+            }
+        }
+        
+        // 多取一条用于判断是否还有下一页
+        List<Appointment> records = baseMapper.selectSeekPage(status, startOf(startDate), endOf(endDate), deptId, doctorId,
+                cursorTime, cursorId, size + 1);
+        boolean hasMore = records.size() > size;
+        if (hasMore) {
+            records = records.subList(0, size);
+        }
+        nameDictionary.fill(records);
+        
+        String nextCursor = null;
+        if (hasMore) {
+            Appointment last = records.get(records.size() - 1);
+            String raw = last.getApptDatetime() + "|" + last.getId();
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        Long total = withTotal ? baseMapper.countForPage(status, startOf(startDate), endOf(endDate), deptId, doctorId)
+                : null;
+        
+        return CursorPage.<Appointment>builder()
+                .records(records)
+                .size(size)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .total(total)
+                .build();
+    }
+    
+    @Override
+    public void exportForEach(LocalDate startDate, LocalDate endDate, Consumer<List<Appointment>> consumer) {
+        List<Appointment> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+        baseMapper.streamForExport(startOf(startDate), endOf(endDate), context -> {
+            chunk.add(context.getResultObject());
+            if (chunk.size() >= EXPORT_CHUNK_SIZE) {
+                nameDictionary.fill(chunk);
+                consumer.accept(chunk);
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            nameDictionary.fill(chunk);
+            consumer.accept(chunk);
+        }
+    }
+    
+    /**
+     * 起始日期转为区间起点（含）
+     */
+    private static LocalDateTime startOf(LocalDate startDate) {
+        return startDate == null ? null : startDate.atStartOfDay();
+    }
+    
+    /**
+     * 结束日期转为区间终点（不含），即次日零点
+     */
+    private static LocalDateTime endOf(LocalDate endDate) {
+        return endDate == null ? null : endDate.plusDays(1).atStartOfDay();
     }
 }
@@ -1,10 +1,12 @@
 package com.pegasus.hospital.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.pegasus.hospital.cache.ReferenceDataCache;
 import com.pegasus.hospital.entity.Department;
 import com.pegasus.hospital.exception.BusinessException;
 import com.pegasus.hospital.mapper.DepartmentMapper;
 import com.pegasus.hospital.service.DepartmentService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -12,14 +14,19 @@ import java.util.List;
 /**
  * 科室服务实现类
  * 
+ * 科室列表由内存中的基础数据快照提供
+ * 
  * @author Pegasus Hospital Team
  */
 @Service
 public class DepartmentServiceImpl extends ServiceImpl<DepartmentMapper, Department> implements DepartmentService {
     
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+    
     @Override
     public List<Department> getAllDepartments() {
-        return list();
+        return referenceDataCache.getDepartments();
     }
     
     @Override
@@ -39,6 +46,8 @@ public class DepartmentServiceImpl extends ServiceImpl<DepartmentMapper, Departm
                 .description(description)
                 .build();
         
-        return save(department);
+        boolean saved = save(department);
+        referenceDataCache.refreshAfterCommit();
+        return saved;
     }
 }
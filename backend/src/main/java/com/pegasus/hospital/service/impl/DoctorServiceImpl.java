@@ -1,9 +1,12 @@
 package com.pegasus.hospital.service.impl;
 
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.pegasus.hospital.cache.ReferenceDataCache;
 import com.pegasus.hospital.dto.DoctorDTO;
+import com.pegasus.hospital.dto.ImportResult;
 import com.pegasus.hospital.dto.LoginResponse;
 import com.pegasus.hospital.entity.Department;
 import com.pegasus.hospital.entity.Doctor;
@@ -14,17 +17,38 @@ import com.pegasus.hospital.service.DoctorService;
 import com.pegasus.hospital.util.IdGenerator;
 import com.pegasus.hospital.util.JwtUtil;
 import com.pegasus.hospital.util.PasswordUtil;
+import com.pegasus.hospital.util.SequenceAllocator;
+import com.pegasus.hospital.util.ValidationUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 医生服务实现类
  * 
+ * 医生列表、按科室查询和医生详情由内存中的基础数据快照提供，
+ * 新增、修改和批量导入医生后重建快照
+ * 
  * @author Pegasus Hospital Team
  */
+@Slf4j
 @Service
 public class DoctorServiceImpl extends ServiceImpl<DoctorMapper, Doctor> implements DoctorService {
     
@@ -34,6 +58,34 @@ public class DoctorServiceImpl extends ServiceImpl<DoctorMapper, Doctor> impleme
     @Autowired
     private DepartmentService departmentService;
     
+    @Autowired
+    private SequenceAllocator sequenceAllocator;
+    
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    /**
+     * 医生ID每次租用的号段长度
+     */
+    @Value("${id-sequence.doctor-step:10}")
+    private int doctorSequenceStep;
+    
+    /**
+     * 批量导入时每批写入的医生数
+     */
+    @Value("${doctor.import.batch-size:200}")
+    private int importBatchSize;
+    
+    private TransactionTemplate chunkTransaction;
+    
+    @PostConstruct
+    public void init() {
+        chunkTransaction = new TransactionTemplate(transactionManager);
+    }
+    
     @Override
     public LoginResponse login(String doctorId, String password) {
         // 1. 查询医生
@@ -65,18 +117,13 @@ public class DoctorServiceImpl extends ServiceImpl<DoctorMapper, Doctor> impleme
     
     @Override
     public List<Doctor> getAllDoctors() {
-        List<Doctor> doctors = baseMapper.selectAllWithDeptName();
-        // 清除敏感信息
-        doctors.forEach(d -> d.setPassword(null));
-        return doctors;
+        // 快照中的医生已清除敏感信息
+        return referenceDataCache.getDoctors();
     }
     
     @Override
     public List<Doctor> getByDeptId(Long deptId) {
-        List<Doctor> doctors = baseMapper.selectByDeptId(deptId);
-        // 清除敏感信息
-        doctors.forEach(d -> d.setPassword(null));
-        return doctors;
+        return referenceDataCache.getDoctorsByDept(deptId);
     }
     
     @Override
@@ -89,16 +136,18 @@ public class DoctorServiceImpl extends ServiceImpl<DoctorMapper, Doctor> impleme
     
     @Override
     public Doctor getByDoctorId(String doctorId) {
+        // 在职医生直接从快照返回
+        Doctor cached = referenceDataCache.getDoctor(doctorId);
+        if (cached != null) {
+            return cached;
+        }
+        
+        // 已离职或尚未进入快照的医生查询数据库
         Doctor doctor = baseMapper.selectByDoctorId(doctorId);
         if (doctor != null) {
             doctor.setPassword(null);
             // 获取科室名称
-            if (doctor.getDeptId() != null) {
-                Department dept = departmentService.getById(doctor.getDeptId());
-                if (dept != null) {
-                    doctor.setDeptName(dept.getDeptName());
-                }
-            }
+            doctor.setDeptName(referenceDataCache.getDeptName(doctor.getDeptId()));
         }
         return doctor;
     }
@@ -118,8 +167,7 @@ public class DoctorServiceImpl extends ServiceImpl<DoctorMapper, Doctor> impleme
         // 2. 生成医生ID
         String doctorId = dto.getDoctorId();
         if (doctorId == null || doctorId.isEmpty()) {
-            String maxId = baseMapper.selectMaxDoctorId();
-            doctorId = IdGenerator.generateNextDoctorId(maxId);
+            doctorId = nextDoctorId();
         } else {
             // 检查ID是否已存在
             if (baseMapper.selectByDoctorId(doctorId) != null) {
@@ -138,10 +186,26 @@ public class DoctorServiceImpl extends ServiceImpl<DoctorMapper, Doctor> impleme
                 .build();
         
         save(doctor);
+        referenceDataCache.refreshAfterCommit();
         doctor.setPassword(null);
         return doctor;
     }
     
+    /**
+     * 从内存号段分配医生ID
+     * 管理员可以手动指定医生ID，分配时跳过已被占用的ID
+     */
+    private String nextDoctorId() {
+        while (true) {
+            long seq = sequenceAllocator.next(IdGenerator.DOCTOR_SEQUENCE, doctorSequenceStep,
+                    () -> Long.parseLong(IdGenerator.generateNextDoctorId(baseMapper.selectMaxDoctorId())));
+            String doctorId = IdGenerator.formatDoctorId(seq);
+            if (baseMapper.selectByDoctorId(doctorId) == null) {
+                return doctorId;
+            }
+        }
+    }
+    
     @Override
     @Transactional
     public Doctor updateDoctor(String doctorId, DoctorDTO dto) {
@@ -172,23 +236,170 @@ public class DoctorServiceImpl extends ServiceImpl<DoctorMapper, Doctor> impleme
         }
         
         updateById(doctor);
+        referenceDataCache.refreshAfterCommit();
         doctor.setPassword(null);
         return doctor;
     }
     
+    /**
+     * 批量导入医生
+     * 
+     * 科室名称和已存在的医生ID各用一次查询解析，未指定ID的行一次租用一段ID，
+     * 计算密码摘要后按批写入；每批一个事务，不使用整体事务，已写入的批次不会因后续失败而回滚
+     */
     @Override
-    @Transactional
-    public int batchImport(List<DoctorDTO> doctors) {
-        int successCount = 0;
+    public ImportResult batchImport(List<DoctorDTO> doctors) {
+        ImportResult result = new ImportResult();
+        
+        // 1. 一次查询解析科室名称
+        Map<String, Long> deptIdByName = new HashMap<>();
+        for (Department dept : departmentService.list()) {
+            deptIdByName.put(dept.getDeptName(), dept.getId());
+        }
+        
+        // 2. 一次IN查询检查指定的医生ID是否已存在
+        Set<String> suppliedIds = doctors.stream()
+                .map(DoctorDTO::getDoctorId)
+                .filter(ValidationUtil::isValidDoctorId)
+                .collect(Collectors.toSet());
+        Set<String> takenIds = suppliedIds.isEmpty() ? new HashSet<>() : selectExistingDoctorIds(suppliedIds);
+        
+        // 3. 逐行校验
+        List<DoctorDTO> accepted = new ArrayList<>();
+        List<Doctor> pending = new ArrayList<>();
+        int missingIds = 0;
         for (DoctorDTO dto : doctors) {
-            try {
-                addDoctor(dto);
-                successCount++;
-            } catch (Exception e) {
-                // 记录失败但继续处理其他记录
-                log.warn("导入医生失败: " + dto.getName() + ", 原因: " + e.getMessage());
+            String error = validateImport(dto, deptIdByName, takenIds);
+            if (error != null) {
+                result.addFailure(dto.getRowNum(), error);
+                continue;
+            }
+            Long deptId = dto.getDeptId() != null ? dto.getDeptId() : deptIdByName.get(dto.getDeptName());
+            pending.add(Doctor.builder()
+                    .doctorId(dto.getDoctorId() == null || dto.getDoctorId().isEmpty() ? null : dto.getDoctorId())
+                    .name(dto.getName())
+                    .deptId(deptId)
+                    .specialty(dto.getSpecialty())
+                    .status(1)
+                    .build());
+            accepted.add(dto);
+            if (pending.get(pending.size() - 1).getDoctorId() == null) {
+                missingIds++;
+            }
+        }
+        
+        // 4. 为未指定ID的行预先租用一段ID
+        Iterator<String> allocated = allocateDoctorIds(missingIds, takenIds).iterator();
+        for (Doctor doctor : pending) {
+            if (doctor.getDoctorId() == null) {
+                doctor.setDoctorId(allocated.next());
             }
         }
-        return successCount;
+        
+        // 5. 计算密码摘要
+        for (int i = 0; i < pending.size(); i++) {
+            String password = accepted.get(i).getPassword();
+            pending.get(i).setPassword(PasswordUtil.encrypt(password != null ? password : "123456"));
+        }
+        
+        // 6. 分批写入
+        for (int from = 0; from < pending.size(); from += importBatchSize) {
+            int to = Math.min(from + importBatchSize, pending.size());
+            insertChunk(pending.subList(from, to), accepted.subList(from, to), result);
+        }
+        return result;
+    }
+    
+    /**
+     * 批量写入一批医生，失败时逐行重试
+     * 
+     * 每批在独立事务中写入（saveBatch由本类调用，自身的@Transactional不生效），
+     * 失败时整批回滚，逐行重试不会把本批已写入的行误报为ID已存在
+     */
+    private void insertChunk(List<Doctor> chunk, List<DoctorDTO> rows, ImportResult result) {
+        List<Doctor> inserted = new ArrayList<>(chunk.size());
+        try {
+            chunkTransaction.executeWithoutResult(status -> saveBatch(chunk, chunk.size()));
+            inserted.addAll(chunk);
+            result.addSuccess(chunk.size());
+        } catch (DataAccessException | MybatisPlusException e) {
+            // 回滚后清除批量写入时回填的自增主键
+            chunk.forEach(doctor -> doctor.setId(null));
+            log.warn("批量插入医生失败，改为逐行插入: {}", e.getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                Doctor doctor = chunk.get(i);
+                try {
+                    baseMapper.insert(doctor);
+                    inserted.add(doctor);
+                    result.addSuccess(1);
+                } catch (DuplicateKeyException ex) {
+                    result.addFailure(rows.get(i).getRowNum(), "医生ID已存在：" + doctor.getDoctorId());
+                } catch (DataAccessException ex) {
+                    result.addFailure(rows.get(i).getRowNum(), "写入失败：" + ex.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        
+        if (!inserted.isEmpty()) {
+            referenceDataCache.refreshAfterCommit();
+        }
+    }
+    
+    /**
+     * 校验导入行，通过返回null，否则返回失败原因
+     * 通过校验的指定ID加入takenIds，用于发现文件内的重复ID
+     */
+    private String validateImport(DoctorDTO dto, Map<String, Long> deptIdByName, Set<String> takenIds) {
+        if (!ValidationUtil.isValidName(dto.getName())) {
+            return "姓名不能为空且最多20个字符";
+        }
+        if (dto.getPassword() != null && !ValidationUtil.isValidPassword(dto.getPassword())) {
+            return "密码不能少于4位";
+        }
+        if (!ValidationUtil.isValidSpecialty(dto.getSpecialty())) {
+            return "专长描述最多200个字符";
+        }
+        if (dto.getDeptId() == null && dto.getDeptName() != null && !deptIdByName.containsKey(dto.getDeptName())) {
+            return "科室不存在：" + dto.getDeptName();
+        }
+        String doctorId = dto.getDoctorId();
+        if (doctorId != null && !doctorId.isEmpty()) {
+            if (!ValidationUtil.isValidDoctorId(doctorId)) {
+                return "医生ID必须是8位数字";
+            }
+            if (!takenIds.add(doctorId)) {
+                return "医生ID已存在：" + doctorId;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 从序列中一次租用一段医生ID，跳过已被占用的ID
+     */
+    private List<String> allocateDoctorIds(int count, Set<String> takenIds) {
+        List<String> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            int needed = count - ids.size();
+            long start = sequenceAllocator.nextBlock(IdGenerator.DOCTOR_SEQUENCE, needed,
+                    () -> Long.parseLong(IdGenerator.generateNextDoctorId(baseMapper.selectMaxDoctorId())));
+            List<String> candidates = new ArrayList<>(needed);
+            for (long seq = start; seq < start + needed; seq++) {
+                candidates.add(IdGenerator.formatDoctorId(seq));
+            }
+            Set<String> existing = selectExistingDoctorIds(candidates);
+            for (String id : candidates) {
+                if (!existing.contains(id) && takenIds.add(id)) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+    
+    private Set<String> selectExistingDoctorIds(Collection<String> doctorIds) {
+        return baseMapper.selectNamesByDoctorIds(doctorIds).stream()
+                .map(Doctor::getDoctorId)
+                .collect(Collectors.toCollection(HashSet::new));
     }
 }
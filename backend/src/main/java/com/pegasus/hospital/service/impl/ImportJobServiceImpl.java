@@ -0,0 +1,173 @@
+package com.pegasus.hospital.service.impl;
+
+import com.pegasus.hospital.dto.ImportJob;
+import com.pegasus.hospital.dto.ImportResult;
+import com.pegasus.hospital.exception.BusinessException;
+import com.pegasus.hospital.service.DoctorService;
+import com.pegasus.hospital.service.ImportJobService;
+import com.pegasus.hospital.service.ScheduleService;
+import com.pegasus.hospital.util.ExcelUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步导入任务服务实现类
+ * 
+ * 上传文件先在请求线程中保存为临时文件，随后立即返回任务ID；
+ * 解析和写入在taskExecutor线程池中分批进行，不占用Tomcat请求线程。
+ * 任务状态保存在内存中，结束后保留一段时间供查询
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@Service
+public class ImportJobServiceImpl implements ImportJobService {
+    
+    private static final String TYPE_DOCTOR = "doctor";
+    private static final String TYPE_SCHEDULE = "schedule";
+    
+    @Autowired
+    private ExcelUtil excelUtil;
+    
+    @Autowired
+    private DoctorService doctorService;
+    
+    @Autowired
+    private ScheduleService scheduleService;
+    
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+    
+    /**
+     * 同时排队或运行的导入任务上限
+     */
+    @Value("${import.job.max-active:4}")
+    private int maxActiveJobs;
+    
+    /**
+     * 已结束任务的保留时间（分钟）
+     */
+    @Value("${import.job.retention-minutes:60}")
+    private long retentionMinutes;
+    
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    
+    private final AtomicInteger activeJobs = new AtomicInteger();
+    
+    @Override
+    public ImportJob submitDoctorImport(MultipartFile file) {
+        return submit(TYPE_DOCTOR, file);
+    }
+    
+    @Override
+    public ImportJob submitScheduleImport(MultipartFile file) {
+        return submit(TYPE_SCHEDULE, file);
+    }
+    
+    @Override
+    public ImportJob getJob(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        return job != null ? job.snapshot() : null;
+    }
+    
+    /**
+     * 保存上传文件并提交后台任务
+     */
+    private ImportJob submit(String type, MultipartFile file) {
+        purgeExpired();
+        
+        // 线程池满时CallerRunsPolicy会在请求线程中执行，这里提前拒绝
+        if (activeJobs.incrementAndGet() > maxActiveJobs) {
+            activeJobs.decrementAndGet();
+            throw new BusinessException("导入任务过多，请稍后再试");
+        }
+        
+        Path temp;
+        try {
+            // 请求结束后上传文件即被清理，先转存为临时文件
+            temp = Files.createTempFile("import-" + type + "-", ".tmp");
+            file.transferTo(temp);
+        } catch (IOException e) {
+            activeJobs.decrementAndGet();
+            throw new BusinessException("保存上传文件失败：" + e.getMessage());
+        }
+        
+        ImportJob job = new ImportJob();
+        job.setJobId(UUID.randomUUID().toString().replace("-", ""));
+        job.setType(type);
+        job.setFileName(file.getOriginalFilename());
+        job.setStatus(ImportJob.STATUS_PENDING);
+        job.setResult(new ImportResult());
+        job.setCreatedAt(LocalDateTime.now());
+        jobs.put(job.getJobId(), job);
+        
+        try {
+            taskExecutor.execute(() -> run(job, temp));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getJobId());
+            activeJobs.decrementAndGet();
+            deleteQuietly(temp);
+            throw new BusinessException("导入任务过多，请稍后再试");
+        }
+        return job.snapshot();
+    }
+    
+    /**
+     * 在后台线程中执行导入
+     */
+    private void run(ImportJob job, Path file) {
+        job.setStatus(ImportJob.STATUS_RUNNING);
+        ImportResult result = job.getResult();
+        try {
+            if (TYPE_DOCTOR.equals(job.getType())) {
+                excelUtil.readDoctorExcel(file, result, chunk -> result.merge(doctorService.batchImport(chunk)));
+            } else {
+                excelUtil.readScheduleExcel(file, result, chunk -> result.merge(scheduleService.batchImport(chunk)));
+            }
+            job.setStatus(ImportJob.STATUS_DONE);
+            log.info("导入任务完成: {} {}, 成功 {} 行, 失败 {} 行",
+                    job.getJobId(), job.getType(), result.getSuccess(), result.getFailed());
+        } catch (Exception e) {
+            log.warn("导入任务失败: {} {}, 原因: {}", job.getJobId(), job.getType(), e.getMessage());
+            job.setMessage(e.getMessage());
+            job.setStatus(ImportJob.STATUS_FAILED);
+        } finally {
+            job.setFinishedAt(LocalDateTime.now());
+            activeJobs.decrementAndGet();
+            deleteQuietly(file);
+        }
+    }
+    
+    /**
+     * 清理超过保留时间的已结束任务
+     */
+    private void purgeExpired() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished()
+                && job.getFinishedAt() != null && job.getFinishedAt().isBefore(threshold));
+    }
+    
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除临时文件失败: {}", file);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.pegasus.hospital.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.pegasus.hospital.cache.NameDictionary;
 import com.pegasus.hospital.dto.LoginResponse;
 import com.pegasus.hospital.dto.PatientRegisterRequest;
 import com.pegasus.hospital.dto.PatientUpdateRequest;
@@ -11,8 +12,11 @@ import com.pegasus.hospital.service.PatientService;
 import com.pegasus.hospital.util.IdGenerator;
 import com.pegasus.hospital.util.JwtUtil;
 import com.pegasus.hospital.util.PasswordUtil;
+import com.pegasus.hospital.util.SequenceAllocator;
+import com.pegasus.hospital.util.TransactionUtil;
 import com.pegasus.hospital.util.ValidationUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,6 +33,18 @@ public class PatientServiceImpl extends ServiceImpl<PatientMapper, Patient> impl
     @Autowired
     private JwtUtil jwtUtil;
     
+    @Autowired
+    private SequenceAllocator sequenceAllocator;
+    
+    @Autowired
+    private NameDictionary nameDictionary;
+    
+    /**
+     * 患者ID每次租用的号段长度
+     */
+    @Value("${id-sequence.patient-step:50}")
+    private int patientSequenceStep;
+    
     @Override
     @Transactional
     public Patient register(PatientRegisterRequest request) {
@@ -47,9 +63,10 @@ public class PatientServiceImpl extends ServiceImpl<PatientMapper, Patient> impl
             throw new BusinessException("该身份证号已注册");
         }
         
-        // 4. 生成患者ID
-        String maxId = baseMapper.selectMaxPatientId();
-        String patientId = IdGenerator.generateNextPatientId(maxId);
+        // 4. 生成患者ID（从内存号段分配，序列首次创建时才查询已有最大ID）
+        long seq = sequenceAllocator.next(IdGenerator.PATIENT_SEQUENCE, patientSequenceStep,
+                () -> Long.parseLong(IdGenerator.generateNextPatientId(baseMapper.selectMaxPatientId())));
+        String patientId = IdGenerator.formatPatientId(seq);
         
         // 5. 从身份证解析信息
         LocalDate birthDate = ValidationUtil.parseBirthDateFromIdentity(request.getIdentityId());
@@ -72,6 +89,7 @@ public class PatientServiceImpl extends ServiceImpl<PatientMapper, Patient> impl
         
         // 7. 保存到数据库
         save(patient);
+        TransactionUtil.afterCommit(() -> nameDictionary.putPatient(patient));
         
         // 8. 返回时清除密码
         patient.setPassword(null);
@@ -149,6 +167,7 @@ public class PatientServiceImpl extends ServiceImpl<PatientMapper, Patient> impl
         
         // 3. 保存更新
         updateById(patient);
+        TransactionUtil.afterCommit(() -> nameDictionary.putPatient(patient));
         
         // 4. 返回时清除密码
         patient.setPassword(null);
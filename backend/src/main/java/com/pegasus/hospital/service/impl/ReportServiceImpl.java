@@ -0,0 +1,307 @@
+package com.pegasus.hospital.service.impl;
+
+import com.pegasus.hospital.dto.ReportFile;
+import com.pegasus.hospital.exception.BusinessException;
+import com.pegasus.hospital.service.ReportService;
+import com.pegasus.hospital.util.PdfUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.YearMonth;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * 统计报告服务实现类
+ * 
+ * PDF在taskExecutor线程池中生成。
+ * 已结束月份的数据不再变化，生成后以月份和缓存键命名保存在磁盘缓存目录，
+ * 之后直接发送缓存文件，同一月份同时只生成一次，并发请求共享缓存文件；
+ * 重算统计后由 evictMonthlyReports 删除受影响月份的缓存，
+ * 已结束月份的预约被取消或完成后由统计服务调用 evictMonthlyReport 删除该月的缓存；
+ * 当月报告每个请求各自生成临时文件，由调用方发送后删除
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@Service
+public class ReportServiceImpl implements ReportService {
+    
+    /**
+     * 报告版式版本，修改报告内容或版式后递增，使旧缓存失效
+     */
+    private static final String MONTHLY_REPORT_VERSION = "1";
+    
+    @Autowired
+    private PdfUtil pdfUtil;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+    
+    @Value("${report.cache-dir:${java.io.tmpdir}/pegasus-hospital/reports}")
+    private String cacheDir;
+    
+    /**
+     * 等待报告生成的最长时间（秒）
+     */
+    @Value("${report.render-timeout-seconds:60}")
+    private long renderTimeoutSeconds;
+    
+    private Path cachePath;
+    
+    /**
+     * 正在生成的已结束月份报告，键为缓存键
+     */
+    private final ConcurrentMap<String, CompletableFuture<ReportFile>> inFlight = new ConcurrentHashMap<>();
+    
+    /**
+     * 缓存淘汰次数；生成期间发生过淘汰的报告可能读到重算前的统计，不写入缓存
+     */
+    private long evictions;
+    
+    private final Object cacheLock = new Object();
+    
+    @PostConstruct
+    public void init() throws IOException {
+        cachePath = Paths.get(cacheDir);
+        Files.createDirectories(cachePath);
+    }
+    
+    @Override
+    public ReportFile getMonthlyReport(YearMonth month) {
+        if (month.isBefore(YearMonth.now())) {
+            String key = cacheKey("monthly", MONTHLY_REPORT_VERSION, month.toString());
+            Path cached = cachePath.resolve("monthly-" + month + "-" + key + ".pdf");
+            if (Files.exists(cached)) {
+                return new ReportFile(cached, true);
+            }
+            return await(month, shared(key, () -> renderToCache(month, cached)), false);
+        }
+        // 当月数据仍在变化，每个请求生成自己的临时文件，避免一个请求发送完删除文件时其他请求仍在读取
+        return await(month, submit(() -> new ReportFile(render(month, null), false)), true);
+    }
+    
+    /**
+     * 同一键只生成一次，并发请求共享同一个结果
+     */
+    private CompletableFuture<ReportFile> shared(String key, RenderTask task) {
+        CompletableFuture<ReportFile> created = new CompletableFuture<>();
+        CompletableFuture<ReportFile> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        submit(task).whenComplete((report, e) -> {
+            inFlight.remove(key, created);
+            if (e != null) {
+                created.completeExceptionally(e);
+            } else {
+                created.complete(report);
+            }
+        });
+        return created;
+    }
+    
+    /**
+     * 在线程池中生成报告
+     */
+    private CompletableFuture<ReportFile> submit(RenderTask task) {
+        CompletableFuture<ReportFile> future = new CompletableFuture<>();
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    future.complete(task.render());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    /**
+     * 请求线程等待报告生成
+     * 
+     * @param temporary 结果是否为临时文件；放弃等待时由生成线程完成后删除
+     */
+    private ReportFile await(YearMonth month, CompletableFuture<ReportFile> future, boolean temporary) {
+        try {
+            return future.get(renderTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            discardWhenDone(future, temporary);
+            throw new BusinessException("报告生成中，请稍后重试");
+        } catch (ExecutionException e) {
+            log.error("报告生成失败: {}", month, e.getCause());
+            throw new BusinessException("报告生成失败：" + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            discardWhenDone(future, temporary);
+            Thread.currentThread().interrupt();
+            throw new BusinessException("报告生成被中断");
+        }
+    }
+    
+    /**
+     * 没有请求会再发送这份临时文件，生成完成后删除
+     */
+    private void discardWhenDone(CompletableFuture<ReportFile> future, boolean temporary) {
+        if (!temporary) {
+            return;
+        }
+        future.thenAccept(report -> {
+            try {
+                Files.deleteIfExists(report.getPath());
+            } catch (IOException e) {
+                log.warn("删除临时报告文件失败: {}", report.getPath(), e);
+            }
+        });
+    }
+    
+    @Override
+    public int evictMonthlyReports(YearMonth fromMonth) {
+        // 无法识别月份的文件（旧版命名）一并删除
+        int evicted = evictWhere(month -> month == null || !month.isBefore(fromMonth));
+        log.info("月度报告缓存已删除: {} 起共 {} 个", fromMonth, evicted);
+        return evicted;
+    }
+    
+    @Override
+    public int evictMonthlyReport(YearMonth month) {
+        int evicted = evictWhere(month::equals);
+        if (evicted > 0) {
+            log.info("月度报告缓存已删除: {}", month);
+        }
+        return evicted;
+    }
+    
+    /**
+     * 删除月份满足条件的缓存文件，并使正在生成的报告重新生成
+     */
+    private int evictWhere(Predicate<YearMonth> matches) {
+        int evicted = 0;
+        synchronized (cacheLock) {
+            evictions++;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(cachePath, "monthly-*.pdf")) {
+                for (Path file : files) {
+                    if (matches.test(monthOf(file))) {
+                        Files.deleteIfExists(file);
+                        evicted++;
+                    }
+                }
+            } catch (IOException e) {
+                throw new BusinessException("删除报告缓存失败：" + e.getMessage());
+            }
+        }
+        return evicted;
+    }
+    
+    /**
+     * 缓存文件名 monthly-yyyy-MM-{key}.pdf 中的月份
+     */
+    private static YearMonth monthOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return YearMonth.parse(name.substring("monthly-".length(), "monthly-yyyy-MM".length()));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 生成报告并原子地移入缓存目录
+     * 
+     * 生成期间缓存被淘汰过（统计已重算）时丢弃结果重新生成
+     */
+    private ReportFile renderToCache(YearMonth month, Path target) throws IOException {
+        while (true) {
+            long generation;
+            synchronized (cacheLock) {
+                generation = evictions;
+            }
+            Path temp = render(month, cachePath);
+            try {
+                synchronized (cacheLock) {
+                    if (generation == evictions) {
+                        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                        log.info("月度报告已缓存: {} -> {}", month, target.getFileName());
+                        return new ReportFile(target, true);
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            log.info("月度报告生成期间统计已重算，重新生成: {}", month);
+        }
+    }
+    
+    /**
+     * 生成报告到临时文件
+     * 
+     * @param dir 临时文件目录，为null时使用系统临时目录
+     */
+    private Path render(YearMonth month, Path dir) throws IOException {
+        Path temp = dir != null
+                ? Files.createTempFile(dir, "monthly-", ".tmp")
+                : Files.createTempFile("monthly-", ".pdf");
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            pdfUtil.renderMonthlyReport(month, out);
+            outcome = "success";
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("hospital.report.render", "type", "monthly", "outcome", outcome));
+        }
+        return temp;
+    }
+    
+    /**
+     * 以报告类型、版式版本和月份拼接后的SHA-256作为缓存键
+     * 
+     * 不包含报告依据的统计数据，统计变化后由 evictMonthlyReports / evictMonthlyReport 删除对应的缓存文件
+     */
+    private static String cacheKey(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(String.join("|", parts).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256算法不可用", e);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface RenderTask {
+        ReportFile render() throws IOException;
+    }
+}
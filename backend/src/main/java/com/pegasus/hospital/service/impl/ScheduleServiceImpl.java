@@ -1,25 +1,67 @@
 package com.pegasus.hospital.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.pegasus.hospital.cache.ScheduleAvailabilityCache;
+import com.pegasus.hospital.cache.SlotInventory;
+import com.pegasus.hospital.config.BookingLockMode;
+import com.pegasus.hospital.dto.ImportResult;
 import com.pegasus.hospital.dto.ScheduleDTO;
+import com.pegasus.hospital.entity.Doctor;
 import com.pegasus.hospital.entity.Schedule;
+import com.pegasus.hospital.exception.BookingException;
 import com.pegasus.hospital.exception.BusinessException;
+import com.pegasus.hospital.mapper.DoctorMapper;
 import com.pegasus.hospital.mapper.ScheduleMapper;
 import com.pegasus.hospital.service.ScheduleService;
+import com.pegasus.hospital.util.TransactionUtil;
+import com.pegasus.hospital.util.ValidationUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 排班服务实现类
  * 
+ * 排班的增删改与预约数变化在事务提交后同步到内存号源库存，
+ * 并使对应日期和医生的可预约排班缓存失效
+ * 
  * @author Pegasus Hospital Team
  */
+@Slf4j
 @Service
 public class ScheduleServiceImpl extends ServiceImpl<ScheduleMapper, Schedule> implements ScheduleService {
     
+    @Autowired
+    private SlotInventory slotInventory;
+    
+    @Autowired
+    private BookingLockMode bookingLockMode;
+    
+    @Autowired
+    private ScheduleAvailabilityCache availabilityCache;
+    
+    @Autowired
+    private DoctorMapper doctorMapper;
+    
+    /**
+     * 批量导入时每条多行INSERT包含的排班数
+     */
+    @Value("${schedule.import.batch-size:500}")
+    private int importBatchSize;
+    
     @Override
     public List<Schedule> getByDoctorAndDate(String doctorId, LocalDate workDate) {
         return baseMapper.selectByDoctorAndDate(doctorId, workDate);
@@ -27,12 +69,14 @@ public class ScheduleServiceImpl extends ServiceImpl<ScheduleMapper, Schedule> i
     
     @Override
     public List<Schedule> getAvailableByDoctor(String doctorId) {
-        return baseMapper.selectAvailableByDoctor(doctorId, LocalDate.now());
+        LocalDate today = LocalDate.now();
+        return availabilityCache.getByDoctor(doctorId, today,
+                () -> baseMapper.selectAvailableByDoctor(doctorId, today));
     }
     
     @Override
     public List<Schedule> getAvailableByDate(LocalDate workDate) {
-        return baseMapper.selectAvailableByDate(workDate);
+        return availabilityCache.getByDate(workDate, () -> baseMapper.selectAvailableByDate(workDate));
     }
     
     @Override
@@ -57,6 +101,10 @@ public class ScheduleServiceImpl extends ServiceImpl<ScheduleMapper, Schedule> i
                 .build();
         
         save(schedule);
+        TransactionUtil.afterCommit(() -> {
+            slotInventory.put(schedule);
+            availabilityCache.invalidate(schedule.getDoctorId(), schedule.getWorkDate());
+        });
         return schedule;
     }
     
@@ -68,6 +116,8 @@ public class ScheduleServiceImpl extends ServiceImpl<ScheduleMapper, Schedule> i
             throw new BusinessException("排班不存在");
         }
         
+        LocalDate originalDate = schedule.getWorkDate();
+        
         // 如果已有预约，不允许修改时间
         if (schedule.getBookedCount() > 0) {
             if (!schedule.getWorkDate().equals(dto.getWorkDate()) ||
@@ -94,6 +144,11 @@ public class ScheduleServiceImpl extends ServiceImpl<ScheduleMapper, Schedule> i
         }
         
         updateById(schedule);
+        TransactionUtil.afterCommit(() -> {
+            slotInventory.reload(id);
+            availabilityCache.invalidate(schedule.getDoctorId(), originalDate);
+            availabilityCache.invalidate(null, schedule.getWorkDate());
+        });
         return schedule;
     }
     
@@ -109,27 +164,157 @@ public class ScheduleServiceImpl extends ServiceImpl<ScheduleMapper, Schedule> i
             throw new BusinessException("已有预约的排班不能删除");
         }
         
-        return removeById(id);
+        boolean removed = removeById(id);
+        TransactionUtil.afterCommit(() -> {
+            slotInventory.remove(id);
+            availabilityCache.invalidate(schedule.getDoctorId(), schedule.getWorkDate());
+        });
+        return removed;
     }
     
+    /**
+     * 批量导入排班
+     * 
+     * 1. 逐行校验字段，一次IN查询确认医生存在
+     * 2. 每位医生一次范围查询取出已有排班，在内存中与文件内的行一起去重
+     * 3. 按批多行INSERT，某批失败时退回逐行插入以定位失败行
+     * 
+     * 不使用整体事务，已写入的批次不会因后续失败而回滚
+     */
     @Override
-    @Transactional
-    public int batchImport(List<ScheduleDTO> schedules) {
-        int successCount = 0;
+    public ImportResult batchImport(List<ScheduleDTO> schedules) {
+        ImportResult result = new ImportResult();
+        
+        // 1. 校验并确认医生存在
+        Set<String> doctorIds = schedules.stream()
+                .map(ScheduleDTO::getDoctorId)
+                .filter(ValidationUtil::isValidDoctorId)
+                .collect(Collectors.toSet());
+        Set<String> existingDoctors = doctorIds.isEmpty() ? Set.of() :
+                doctorMapper.selectNamesByDoctorIds(doctorIds).stream()
+                        .map(Doctor::getDoctorId)
+                        .collect(Collectors.toSet());
+        
+        Map<String, List<ScheduleDTO>> byDoctor = new LinkedHashMap<>();
         for (ScheduleDTO dto : schedules) {
+            String error = validateImport(dto, existingDoctors);
+            if (error != null) {
+                result.addFailure(dto.getRowNum(), error);
+            } else {
+                byDoctor.computeIfAbsent(dto.getDoctorId(), k -> new ArrayList<>()).add(dto);
+            }
+        }
+        
+        // 2. 按医生去重
+        List<ScheduleDTO> pending = new ArrayList<>();
+        for (Map.Entry<String, List<ScheduleDTO>> entry : byDoctor.entrySet()) {
+            List<ScheduleDTO> rows = entry.getValue();
+            LocalDate minDate = rows.stream().map(ScheduleDTO::getWorkDate).min(LocalDate::compareTo).get();
+            LocalDate maxDate = rows.stream().map(ScheduleDTO::getWorkDate).max(LocalDate::compareTo).get();
+            
+            Set<String> taken = new HashSet<>();
+            for (Schedule s : baseMapper.selectSlotKeysByDoctorAndDateRange(entry.getKey(), minDate, maxDate)) {
+                taken.add(s.getWorkDate() + " " + s.getStartTime());
+            }
+            for (ScheduleDTO dto : rows) {
+                if (taken.add(dto.getWorkDate() + " " + dto.getStartTime())) {
+                    pending.add(dto);
+                } else {
+                    result.addFailure(dto.getRowNum(), "该时间段已存在排班");
+                }
+            }
+        }
+        
+        // 3. 分批写入
+        Set<ScheduleKey> touched = new HashSet<>();
+        for (int from = 0; from < pending.size(); from += importBatchSize) {
+            List<ScheduleDTO> chunk = pending.subList(from, Math.min(from + importBatchSize, pending.size()));
+            insertChunk(chunk, result, touched);
+        }
+        
+        // 4. 新排班在首次访问时载入号源库存，这里只需使可预约缓存失效
+        for (ScheduleKey key : touched) {
+            availabilityCache.invalidate(key.doctorId(), key.workDate());
+        }
+        return result;
+    }
+    
+    /**
+     * 多行插入一批排班，失败时逐行重试
+     */
+    private void insertChunk(List<ScheduleDTO> chunk, ImportResult result, Set<ScheduleKey> touched) {
+        List<Schedule> rows = new ArrayList<>(chunk.size());
+        for (ScheduleDTO dto : chunk) {
+            rows.add(Schedule.builder()
+                    .doctorId(dto.getDoctorId())
+                    .workDate(dto.getWorkDate())
+                    .startTime(dto.getStartTime())
+                    .endTime(dto.getEndTime())
+                    .maxPatients(dto.getMaxPatients() != null ? dto.getMaxPatients() : 20)
+                    .bookedCount(0)
+                    .version(0)
+                    .build());
+        }
+        
+        try {
+            baseMapper.insertBatch(rows);
+            result.addSuccess(rows.size());
+            rows.forEach(s -> touched.add(new ScheduleKey(s.getDoctorId(), s.getWorkDate())));
+            return;
+        } catch (DataAccessException e) {
+            log.warn("批量插入排班失败，改为逐行插入: {}", e.getMostSpecificCause().getMessage());
+        }
+        
+        for (int i = 0; i < rows.size(); i++) {
+            Schedule schedule = rows.get(i);
+            Integer rowNum = chunk.get(i).getRowNum();
             try {
-                addSchedule(dto);
-                successCount++;
-            } catch (Exception e) {
-                log.warn("导入排班失败: " + dto.getDoctorId() + " " + dto.getWorkDate() + ", 原因: " + e.getMessage());
+                baseMapper.insert(schedule);
+                result.addSuccess(1);
+                touched.add(new ScheduleKey(schedule.getDoctorId(), schedule.getWorkDate()));
+            } catch (DuplicateKeyException e) {
+                result.addFailure(rowNum, "该时间段已存在排班");
+            } catch (DataAccessException e) {
+                result.addFailure(rowNum, "写入失败：" + e.getMostSpecificCause().getMessage());
             }
         }
-        return successCount;
+    }
+    
+    /**
+     * 校验导入行，通过返回null，否则返回失败原因
+     */
+    private String validateImport(ScheduleDTO dto, Set<String> existingDoctors) {
+        if (!ValidationUtil.isValidDoctorId(dto.getDoctorId())) {
+            return "医生ID必须是8位数字";
+        }
+        if (!existingDoctors.contains(dto.getDoctorId())) {
+            return "医生不存在";
+        }
+        if (dto.getWorkDate() == null || dto.getStartTime() == null || dto.getEndTime() == null) {
+            return "工作日期、开始时间和结束时间不能为空";
+        }
+        if (!dto.getStartTime().isBefore(dto.getEndTime())) {
+            return "开始时间必须早于结束时间";
+        }
+        if (dto.getMaxPatients() != null && dto.getMaxPatients() < 1) {
+            return "最大预约数至少为1";
+        }
+        return null;
     }
     
     @Override
     @Transactional
     public boolean incrementBookedCount(Long scheduleId) {
+        if (bookingLockMode == BookingLockMode.ATOMIC) {
+            // 原子更新，无需先读取version
+            if (baseMapper.incrementBookedCountAtomic(scheduleId) == 0) {
+                TransactionUtil.afterRollback(() -> slotInventory.reload(scheduleId));
+                throw new BookingException(BookingException.OUTCOME_FULL, "预约失败，该时段号源已满");
+            }
+            invalidateAvailability(scheduleId);
+            return true;
+        }
+        
         Schedule schedule = getById(scheduleId);
         if (schedule == null) {
             throw new BusinessException("排班不存在");
@@ -138,14 +323,65 @@ public class ScheduleServiceImpl extends ServiceImpl<ScheduleMapper, Schedule> i
         // 使用乐观锁更新，防止超卖
         int rows = baseMapper.incrementBookedCount(scheduleId, schedule.getVersion());
         if (rows == 0) {
-            throw new BusinessException("预约失败，号源已满或已被他人抢占，请重试");
+            // 数据库拒绝时以数据库为准刷新内存库存（如其他节点已售出）
+            TransactionUtil.afterRollback(() -> slotInventory.reload(scheduleId));
+            throw new BookingException(BookingException.OUTCOME_CONFLICT, "预约失败，号源已满或已被他人抢占，请重试");
+        }
+        invalidateAvailability(scheduleId);
+        return true;
+    }
+    
+    @Override
+    @Transactional
+    public boolean incrementBookedCountBy(Long scheduleId, int count) {
+        if (bookingLockMode == BookingLockMode.ATOMIC) {
+            if (baseMapper.incrementBookedCountBy(scheduleId, count) == 0) {
+                TransactionUtil.afterRollback(() -> slotInventory.reload(scheduleId));
+                throw new BookingException(BookingException.OUTCOME_FULL, "预约失败，该时段号源不足");
+            }
+            invalidateAvailability(scheduleId);
+            return true;
         }
+        
+        Schedule schedule = getById(scheduleId);
+        if (schedule == null) {
+            throw new BusinessException("排班不存在");
+        }
+        
+        // 乐观锁模式下整批同样校验version，冲突时由合并预约逐个重试
+        if (baseMapper.incrementBookedCountByVersion(scheduleId, count, schedule.getVersion()) == 0) {
+            TransactionUtil.afterRollback(() -> slotInventory.reload(scheduleId));
+            throw new BookingException(BookingException.OUTCOME_CONFLICT, "预约失败，号源不足或已被他人抢占，请重试");
+        }
+        invalidateAvailability(scheduleId);
         return true;
     }
     
     @Override
     @Transactional
     public boolean decrementBookedCount(Long scheduleId) {
-        return baseMapper.decrementBookedCount(scheduleId) > 0;
+        if (baseMapper.decrementBookedCount(scheduleId) == 0) {
+            return false;
+        }
+        TransactionUtil.afterCommit(() -> slotInventory.release(scheduleId));
+        invalidateAvailability(scheduleId);
+        return true;
+    }
+    
+    /**
+     * 预约数变化后使对应日期和医生的可预约排班缓存失效
+     * 排班的医生和日期从内存号源库存中获取，无需再查询
+     */
+    private void invalidateAvailability(Long scheduleId) {
+        SlotInventory.Slot slot = slotInventory.get(scheduleId);
+        if (slot != null) {
+            TransactionUtil.afterCommit(() -> availabilityCache.invalidate(slot.getDoctorId(), slot.getWorkDate()));
+        }
+    }
+    
+    /**
+     * 导入后需要刷新可预约缓存的医生和日期
+     */
+    private record ScheduleKey(String doctorId, LocalDate workDate) {
     }
 }
@@ -0,0 +1,164 @@
+package com.pegasus.hospital.service.impl;
+
+import com.pegasus.hospital.cache.LiveStatistics;
+import com.pegasus.hospital.cache.NameDictionary;
+import com.pegasus.hospital.entity.Appointment;
+import com.pegasus.hospital.exception.BusinessException;
+import com.pegasus.hospital.mapper.AppointmentDailyStatsMapper;
+import com.pegasus.hospital.service.ReportService;
+import com.pegasus.hospital.service.StatisticsService;
+import com.pegasus.hospital.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 预约统计服务实现类
+ * 
+ * 预约量按 日期 × 医生 × 状态 预聚合在appointment_daily_stats表中，
+ * 预约、取消、完成时在同一事务内增量更新，统计查询只读取聚合行；
+ * 事务提交后同步更新内存中的实时统计，已结束月份的统计变化时删除该月已缓存的报告
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@Service
+public class StatisticsServiceImpl implements StatisticsService {
+    
+    @Autowired
+    private AppointmentDailyStatsMapper statsMapper;
+    
+    @Autowired
+    private NameDictionary nameDictionary;
+    
+    @Autowired
+    private LiveStatistics liveStatistics;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    /**
+     * 报告服务经PdfUtil依赖本服务，延迟注入以避免循环依赖
+     */
+    @Autowired
+    @Lazy
+    private ReportService reportService;
+    
+    /**
+     * 重算统计时每个事务覆盖的天数
+     */
+    @Value("${statistics.rebuild-chunk-days:1}")
+    private int rebuildChunkDays;
+    
+    private TransactionTemplate chunkTransaction;
+    
+    @PostConstruct
+    public void init() {
+        chunkTransaction = new TransactionTemplate(transactionManager);
+    }
+    
+    @Override
+    public void recordStatusChange(Appointment appointment, String fromStatus, String toStatus) {
+        LocalDate statDate = appointment.getApptDatetime().toLocalDate();
+        String doctorId = appointment.getDoctorId();
+        Long deptId = nameDictionary.getDeptId(doctorId);
+        
+        if (fromStatus != null) {
+            statsMapper.addCount(statDate, doctorId, deptId, fromStatus, -1);
+        }
+        statsMapper.addCount(statDate, doctorId, deptId, toStatus, 1);
+        
+        TransactionUtil.afterCommit(() -> {
+            if (fromStatus != null) {
+                liveStatistics.add(statDate, deptId, doctorId, fromStatus, -1);
+            }
+            liveStatistics.add(statDate, deptId, doctorId, toStatus, 1);
+            // 已结束月份的报告已缓存，统计变化后删除该月的缓存
+            YearMonth month = YearMonth.from(statDate);
+            if (month.isBefore(YearMonth.now())) {
+                try {
+                    reportService.evictMonthlyReport(month);
+                } catch (BusinessException e) {
+                    log.warn("删除月度报告缓存失败: {} {}", month, e.getMessage());
+                }
+            }
+        });
+    }
+    
+    @Override
+    public void recordBooked(List<Appointment> appointments) {
+        Map<StatKey, Integer> counts = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            counts.merge(new StatKey(appointment.getApptDatetime().toLocalDate(), appointment.getDoctorId()), 1,
+                    Integer::sum);
+        }
+        counts.forEach((key, count) -> {
+            Long deptId = nameDictionary.getDeptId(key.doctorId());
+            statsMapper.addCount(key.statDate(), key.doctorId(), deptId, Appointment.STATUS_BOOKED, count);
+            TransactionUtil.afterCommit(() ->
+                    liveStatistics.add(key.statDate(), deptId, key.doctorId(), Appointment.STATUS_BOOKED, count));
+        });
+    }
+    
+    @Override
+    public List<Map<String, Object>> countByDepartment(LocalDate startDate, LocalDate endDate) {
+        return statsMapper.countByDepartment(startDate, endDate);
+    }
+    
+    @Override
+    public List<Map<String, Object>> countByDoctor(LocalDate startDate, LocalDate endDate) {
+        return statsMapper.countByDoctor(startDate, endDate);
+    }
+    
+    @Override
+    public Map<String, Object> getLiveStatistics(LocalDate date) {
+        return liveStatistics.snapshot(date);
+    }
+    
+    @Override
+    public int rebuildFrom(LocalDate fromDate) {
+        // 重算到统计表和预约表中最晚的日期为止（都为空时只处理起始日期）
+        LocalDate lastDate = Objects.requireNonNullElse(
+                latest(statsMapper.selectLastStatDate(), statsMapper.selectLastAppointmentDate()), fromDate);
+        int chunkDays = Math.max(1, rebuildChunkDays);
+        int rows = 0;
+        // 按日期分批，每批在独立事务中删除并重算，只短暂锁定当批的预约行，不阻塞其他日期的预约
+        for (LocalDate start = fromDate; !start.isAfter(lastDate); start = start.plusDays(chunkDays)) {
+            LocalDate chunkStart = start;
+            LocalDate chunkEnd = start.plusDays(chunkDays);
+            Integer chunkRows = chunkTransaction.execute(status -> {
+                statsMapper.deleteRange(chunkStart, chunkEnd);
+                return statsMapper.rebuildRange(chunkStart.atStartOfDay(), chunkEnd.atStartOfDay());
+            });
+            rows += chunkRows != null ? chunkRows : 0;
+        }
+        log.info("预约统计已重算: {} 起共 {} 行", fromDate, rows);
+        liveStatistics.reload();
+        return rows;
+    }
+    
+    private static LocalDate latest(LocalDate a, LocalDate b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+    
+    /**
+     * 统计行键：日期 × 医生
+     */
+    private record StatKey(LocalDate statDate, String doctorId) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.pegasus.hospital.task;
+
+import com.pegasus.hospital.cache.LiveStatistics;
+import com.pegasus.hospital.service.ReportService;
+import com.pegasus.hospital.service.StatisticsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * 预约统计压实任务
+ * 
+ * 每天夜间从预约表重算最近几天及以后（含未来预约）的日统计，
+ * 校正增量维护中可能出现的偏差（如并发修改、医生调换科室），
+ * 重新加载内存中的实时统计，并删除受影响月份的报告缓存
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@Component
+public class StatisticsCompactionTask {
+    
+    @Autowired
+    private StatisticsService statisticsService;
+    
+    @Autowired
+    private LiveStatistics liveStatistics;
+    
+    @Autowired
+    private ReportService reportService;
+    
+    /**
+     * 重算的天数（从今天往前）
+     */
+    @Value("${statistics.compaction-days:7}")
+    private int compactionDays;
+    
+    @Scheduled(cron = "${statistics.compaction-cron:0 30 2 * * ?}")
+    public void compact() {
+        try {
+            LocalDate fromDate = LocalDate.now().minusDays(compactionDays);
+            statisticsService.rebuildFrom(fromDate);
+            reportService.evictMonthlyReports(YearMonth.from(fromDate));
+        } catch (Exception e) {
+            log.error("预约统计压实失败", e);
+        }
+        liveStatistics.purge();
+    }
+}
@@ -0,0 +1,232 @@
+package com.pegasus.hospital.util;
+
+import com.pegasus.hospital.cache.SlotInventory;
+import com.pegasus.hospital.exception.BookingException;
+import com.pegasus.hospital.exception.BusinessException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 预约准入控制
+ * 
+ * 热门排班放号时大量请求同时预约，全部进入数据库会争抢连接池并在同一行锁上排队，
+ * 大部分请求等到连接超时。预约在进入事务前依次经过：
+ * 1. 号源已满（内存库存为0）时立即拒绝；
+ * 2. 按排班公平排队，每个排班同时只放行少量请求，排队人数超过上限时立即拒绝；
+ * 3. 全局限制同时执行的预约事务数，等待超时时拒绝。
+ * 被拒绝的请求快速返回，已放行的请求响应时间保持在有限范围内
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Component
+public class BookingAdmission {
+    
+    @Autowired
+    private SlotInventory slotInventory;
+    
+    @Value("${booking.admission.enabled:true}")
+    private boolean enabled;
+    
+    /**
+     * 每个排班同时执行的预约数
+     */
+    @Value("${booking.admission.per-schedule-concurrency:2}")
+    private int perScheduleConcurrency;
+    
+    /**
+     * 每个排班最多排队的请求数
+     */
+    @Value("${booking.admission.queue-depth:200}")
+    private int queueDepth;
+    
+    /**
+     * 全局同时执行的预约事务数
+     */
+    @Value("${booking.admission.max-concurrent:10}")
+    private int maxConcurrent;
+    
+    /**
+     * 排队和等待事务许可的最长时间(ms)
+     */
+    @Value("${booking.admission.acquire-timeout-ms:3000}")
+    private long acquireTimeoutMillis;
+    
+    private Semaphore transactions;
+    
+    private final ConcurrentMap<Long, Lane> lanes = new ConcurrentHashMap<>();
+    
+    private final AtomicLong admitted = new AtomicLong();
+    
+    private final AtomicLong rejectedSoldOut = new AtomicLong();
+    
+    private final AtomicLong rejectedBusy = new AtomicLong();
+    
+    @PostConstruct
+    public void init() {
+        transactions = new Semaphore(maxConcurrent, true);
+    }
+    
+    /**
+     * 在准入控制下执行预约
+     * 
+     * @param scheduleId 排班ID
+     * @param booking 预约操作（开启事务的服务调用）
+     * @return 预约结果
+     * @throws BusinessException 号源已满或排队已满、等待超时
+     */
+    public <T> T admit(Long scheduleId, Supplier<T> booking) {
+        if (!enabled) {
+            return booking.get();
+        }
+        checkRemaining(scheduleId);
+        
+        enterQueue(scheduleId);
+        try {
+            return execute(scheduleId, 1, booking);
+        } finally {
+            leaveQueue(scheduleId);
+        }
+    }
+    
+    /**
+     * 加入排班队列，排队人数超过上限时拒绝
+     * 
+     * 合并预约的每个请求在加入批次前各自调用，批次中的请求同样计入排队人数；
+     * 加入成功后须调用leaveQueue离开
+     * 
+     * @throws BusinessException 排队已满
+     */
+    public void enterQueue(Long scheduleId) {
+        if (!enabled) {
+            return;
+        }
+        Lane lane = enter(scheduleId);
+        if (lane.waiting > perScheduleConcurrency + queueDepth) {
+            leave(scheduleId);
+            rejectedBusy.incrementAndGet();
+            throw new BusinessException("当前预约人数过多，请稍后重试");
+        }
+    }
+    
+    /**
+     * 离开排班队列
+     */
+    public void leaveQueue(Long scheduleId) {
+        if (enabled) {
+            leave(scheduleId);
+        }
+    }
+    
+    /**
+     * 在准入控制下执行已加入排班队列的一批预约（调用方须仍在队列中）
+     * 
+     * @param requests 批次中的请求数，计入准入统计
+     * @param booking 合并预约操作
+     * @throws BusinessException 号源已满或等待超时
+     */
+    public <T> T admitQueued(Long scheduleId, int requests, Supplier<T> booking) {
+        if (!enabled) {
+            return booking.get();
+        }
+        return execute(scheduleId, requests, booking);
+    }
+    
+    private <T> T execute(Long scheduleId, int requests, Supplier<T> booking) {
+        Lane lane = lanes.get(scheduleId);
+        acquire(lane.permits);
+        try {
+            // 排队期间号源可能已被前面的请求约满
+            checkRemaining(scheduleId);
+            acquire(transactions);
+            try {
+                admitted.addAndGet(requests);
+                return booking.get();
+            } finally {
+                transactions.release();
+            }
+        } finally {
+            lane.permits.release();
+        }
+    }
+    
+    /**
+     * 准入统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("admitted", admitted.get());
+        stats.put("rejectedSoldOut", rejectedSoldOut.get());
+        stats.put("rejectedBusy", rejectedBusy.get());
+        stats.put("activeTransactions", maxConcurrent - transactions.availablePermits());
+        stats.put("queuedSchedules", lanes.size());
+        return stats;
+    }
+    
+    /**
+     * 号源已满（内存库存为0）时拒绝
+     * 
+     * @throws BusinessException 号源已满
+     */
+    public void checkRemaining(Long scheduleId) {
+        SlotInventory.Slot slot = slotInventory.get(scheduleId);
+        if (slot != null && slot.getRemaining() <= 0) {
+            rejectedSoldOut.incrementAndGet();
+            throw new BookingException(BookingException.OUTCOME_FULL, "该时段号源已满");
+        }
+    }
+    
+    private void acquire(Semaphore semaphore) {
+        try {
+            if (!semaphore.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejectedBusy.incrementAndGet();
+                throw new BusinessException("当前预约人数过多，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("预约请求被中断");
+        }
+    }
+    
+    /**
+     * 进入排班队列（排队人数含自己）
+     */
+    private Lane enter(Long scheduleId) {
+        return lanes.compute(scheduleId, (id, lane) -> {
+            Lane current = lane != null ? lane : new Lane(perScheduleConcurrency);
+            current.waiting++;
+            return current;
+        });
+    }
+    
+    /**
+     * 离开排班队列，最后一个请求离开时移除队列
+     */
+    private void leave(Long scheduleId) {
+        lanes.computeIfPresent(scheduleId, (id, lane) -> --lane.waiting == 0 ? null : lane);
+    }
+    
+    /**
+     * 单个排班的排队状态，waiting只在ConcurrentHashMap的compute中修改，其他线程读取的是近似值
+     */
+    private static class Lane {
+        
+        private final Semaphore permits;
+        
+        private volatile int waiting;
+        
+        Lane(int permits) {
+            this.permits = new Semaphore(permits, true);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.pegasus.hospital.util;
+
+import com.pegasus.hospital.dto.AppointmentRequest;
+import com.pegasus.hospital.dto.BookingResult;
+import com.pegasus.hospital.entity.Appointment;
+import com.pegasus.hospital.exception.BusinessException;
+import com.pegasus.hospital.service.AppointmentService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预约请求合并（组提交）
+ * 
+ * 同一排班的并发预约各自执行事务时，都要更新同一行schedule，在InnoDB行锁上串行排队。
+ * 这里把同一排班在短时间窗口（默认2ms）内到达的请求合并为一批：
+ * 第一个到达的请求负责等待窗口结束，然后在准入控制下执行一次合并预约——
+ * 一条UPDATE占用N个号源、一条INSERT写入N条预约，再把各自的结果交还给每个请求。
+ * 每个请求在加入批次前各自计入排班队列，排队已满时直接拒绝，不会随批次绕过排队上限。
+ * 
+ * 整批执行失败（如数据库剩余号源与内存不一致）时逐个预约，每个请求仍得到准确结果
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@Component
+public class BookingCoalescer {
+    
+    @Autowired
+    private AppointmentService appointmentService;
+    
+    @Autowired
+    private BookingAdmission bookingAdmission;
+    
+    @Value("${booking.coalesce.enabled:true}")
+    private boolean enabled;
+    
+    /**
+     * 合并窗口(ms)
+     */
+    @Value("${booking.coalesce.window-ms:2}")
+    private long windowMillis;
+    
+    /**
+     * 每批最多合并的请求数，满员后立即执行
+     */
+    @Value("${booking.coalesce.max-batch:50}")
+    private int maxBatch;
+    
+    /**
+     * 排班ID -> 正在收集请求的批次
+     */
+    private final ConcurrentMap<Long, Batch> openBatches = new ConcurrentHashMap<>();
+    
+    /**
+     * 预约挂号（合并同一排班的并发请求）
+     * 
+     * @return 本请求的预约信息
+     * @throws BusinessException 本请求预约失败
+     */
+    public Appointment book(AppointmentRequest request) {
+        Long scheduleId = request.getScheduleId();
+        if (!enabled) {
+            return bookingAdmission.admit(scheduleId, () -> appointmentService.book(request));
+        }
+        // 号源已满或排队已满时不加入批次
+        bookingAdmission.checkRemaining(scheduleId);
+        bookingAdmission.enterQueue(scheduleId);
+        try {
+            Pending pending = new Pending(request);
+            Batch[] joined = new Batch[1];
+            boolean[] leader = new boolean[1];
+            openBatches.compute(scheduleId, (id, current) -> {
+                Batch batch = current != null ? current : new Batch();
+                leader[0] = current == null;
+                batch.members.add(pending);
+                joined[0] = batch;
+                if (batch.members.size() >= maxBatch) {
+                    // 满员后关闭，之后的请求开启下一批
+                    batch.full.countDown();
+                    return null;
+                }
+                return batch;
+            });
+            
+            if (leader[0]) {
+                lead(scheduleId, joined[0]);
+            }
+            return pending.await();
+        } finally {
+            bookingAdmission.leaveQueue(scheduleId);
+        }
+    }
+    
+    /**
+     * 由批次的第一个请求执行：等待窗口结束或满员，关闭批次后执行
+     */
+    private void lead(Long scheduleId, Batch batch) {
+        try {
+            batch.full.await(windowMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        openBatches.remove(scheduleId, batch);
+        
+        // 关闭后成员列表不再变化
+        List<Pending> members = batch.members;
+        try {
+            bookingAdmission.admitQueued(scheduleId, members.size(), () -> {
+                execute(members);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            members.forEach(p -> p.fail(e));
+        } finally {
+            members.forEach(p -> p.fail(new BusinessException("预约失败，请重试")));
+        }
+    }
+    
+    private void execute(List<Pending> members) {
+        if (members.size() == 1) {
+            bookOne(members.get(0));
+            return;
+        }
+        
+        List<AppointmentRequest> requests = new ArrayList<>(members.size());
+        members.forEach(p -> requests.add(p.request));
+        List<BookingResult> results;
+        try {
+            results = appointmentService.bookBatch(requests);
+        } catch (RuntimeException e) {
+            log.warn("合并预约失败，逐个预约: 排班 {}，{} 个请求，原因: {}",
+                    requests.get(0).getScheduleId(), requests.size(), e.getMessage());
+            members.forEach(this::bookOne);
+            return;
+        }
+        
+        for (int i = 0; i < members.size(); i++) {
+            BookingResult result = results.get(i);
+            if (result.getAppointment() != null) {
+                members.get(i).complete(result.getAppointment());
+            } else {
+                members.get(i).fail(result.toException());
+            }
+        }
+    }
+    
+    private void bookOne(Pending pending) {
+        try {
+            pending.complete(appointmentService.book(pending.request));
+        } catch (RuntimeException e) {
+            pending.fail(e);
+        }
+    }
+    
+    /**
+     * 正在收集请求的批次，成员列表只在ConcurrentHashMap的compute中修改
+     */
+    private static class Batch {
+        
+        private final List<Pending> members = new ArrayList<>();
+        
+        private final CountDownLatch full = new CountDownLatch(1);
+    }
+    
+    /**
+     * 等待结果的单个请求
+     */
+    private static class Pending {
+        
+        private final AppointmentRequest request;
+        
+        private final CompletableFuture<Appointment> result = new CompletableFuture<>();
+        
+        Pending(AppointmentRequest request) {
+            this.request = request;
+        }
+        
+        void complete(Appointment appointment) {
+            result.complete(appointment);
+        }
+        
+        /**
+         * 标记失败，已有结果时忽略
+         */
+        void fail(RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        
+        Appointment await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
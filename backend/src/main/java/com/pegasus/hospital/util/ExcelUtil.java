@@ -1,28 +1,56 @@
 package com.pegasus.hospital.util;
 
 import com.pegasus.hospital.dto.DoctorDTO;
+import com.pegasus.hospital.dto.ImportResult;
 import com.pegasus.hospital.dto.ScheduleDTO;
 import com.pegasus.hospital.entity.Appointment;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletResponse;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Excel工具类
  * 
  * 使用Apache POI实现Excel导入导出功能
+ * 导入使用SAX事件模型逐行解析并分批交给服务层，导出使用SXSSF流式写入
  * 
  * @author Pegasus Hospital Team
  */
@@ -34,101 +62,242 @@ public class ExcelUtil {
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
     
     /**
-     * 解析医生Excel文件
+     * 导入时每批交给服务层的行数
+     */
+    @Value("${excel.import.chunk-size:1000}")
+    private int importChunkSize;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    /**
+     * 流式读取医生Excel文件（本地文件），按批回调
      * 
      * 格式：医生ID | 姓名 | 密码 | 科室名称 | 专长描述
+     * 
+     * @param parseFailures 记录无法解析的行
+     * @param consumer 每批医生信息的处理函数
+     * @return 读取的有效行数
      */
-    public List<DoctorDTO> parseDoctorExcel(MultipartFile file) throws IOException {
-        List<DoctorDTO> doctors = new ArrayList<>();
+    public int readDoctorExcel(Path path, ImportResult parseFailures,
+                               Consumer<List<DoctorDTO>> consumer) throws IOException {
+        return readRows("doctor", path, this::toDoctorDTO, consumer, parseFailures);
+    }
+    
+    /**
+     * 流式读取排班Excel文件（本地文件），按批回调
+     * 
+     * 格式：医生ID | 工作日期 | 开始时间 | 结束时间 | 最大预约数
+     * 
+     * @param parseFailures 记录日期、时间、数字格式错误的行
+     * @param consumer 每批排班信息的处理函数
+     * @return 读取的有效行数
+     */
+    public int readScheduleExcel(Path path, ImportResult parseFailures,
+                                 Consumer<List<ScheduleDTO>> consumer) throws IOException {
+        return readRows("schedule", path, this::toScheduleDTO, consumer, parseFailures);
+    }
+    
+    /**
+     * 医生行转换，空行返回null
+     */
+    private DoctorDTO toDoctorDTO(String[] cells, int rowNum) {
+        DoctorDTO dto = new DoctorDTO();
+        dto.setRowNum(rowNum);
+        dto.setDoctorId(cellAt(cells, 0));
+        dto.setName(cellAt(cells, 1));
+        dto.setPassword(cellAt(cells, 2));
+        dto.setDeptName(cellAt(cells, 3));
+        dto.setSpecialty(cellAt(cells, 4));
         
-        try (Workbook workbook = WorkbookFactory.create(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
-            
-            // 跳过表头，从第二行开始
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-                
-                DoctorDTO dto = new DoctorDTO();
-                dto.setDoctorId(getCellStringValue(row.getCell(0)));
-                dto.setName(getCellStringValue(row.getCell(1)));
-                dto.setPassword(getCellStringValue(row.getCell(2)));
-                dto.setDeptName(getCellStringValue(row.getCell(3)));
-                dto.setSpecialty(getCellStringValue(row.getCell(4)));
-                
-                // 跳过空行
-                if (dto.getName() == null || dto.getName().isEmpty()) {
-                    continue;
-                }
-                
-                // 默认密码
-                if (dto.getPassword() == null || dto.getPassword().isEmpty()) {
-                    dto.setPassword("123456");
-                }
-                
-                doctors.add(dto);
-            }
+        // 跳过空行
+        if (dto.getName() == null || dto.getName().isEmpty()) {
+            return null;
+        }
+        
+        // 默认密码
+        if (dto.getPassword() == null || dto.getPassword().isEmpty()) {
+            dto.setPassword("123456");
+        }
+        
+        return dto;
+    }
+    
+    /**
+     * 排班行转换，无效行返回null
+     */
+    private ScheduleDTO toScheduleDTO(String[] cells, int rowNum) {
+        ScheduleDTO dto = new ScheduleDTO();
+        dto.setRowNum(rowNum);
+        dto.setDoctorId(cellAt(cells, 0));
+        
+        String dateStr = cellAt(cells, 1);
+        if (dateStr != null && !dateStr.isEmpty()) {
+            dto.setWorkDate(LocalDate.parse(dateStr, DATE_FORMATTER));
+        }
+        
+        String startTimeStr = cellAt(cells, 2);
+        if (startTimeStr != null && !startTimeStr.isEmpty()) {
+            dto.setStartTime(LocalTime.parse(startTimeStr, TIME_FORMATTER));
+        }
+        
+        String endTimeStr = cellAt(cells, 3);
+        if (endTimeStr != null && !endTimeStr.isEmpty()) {
+            dto.setEndTime(LocalTime.parse(endTimeStr, TIME_FORMATTER));
+        }
+        
+        String maxPatientsStr = cellAt(cells, 4);
+        if (maxPatientsStr != null && !maxPatientsStr.isEmpty()) {
+            dto.setMaxPatients(Integer.parseInt(maxPatientsStr));
+        }
+        
+        // 跳过无效行
+        if (dto.getDoctorId() == null || dto.getWorkDate() == null) {
+            return null;
         }
         
-        return doctors;
+        return dto;
     }
     
     /**
-     * 解析排班Excel文件
+     * 逐行读取第一个工作表（跳过表头），转换后按批回调
      * 
-     * 格式：医生ID | 工作日期 | 开始时间 | 结束时间 | 最大预约数
+     * xlsx使用SAX事件模型逐行解析，内存中只保留当前一批记录；
+     * 其他格式（如xls）回退到WorkbookFactory
+     * 
+     * @param parseFailures 转换失败的行记录到这里，为null时直接抛出异常
      */
-    public List<ScheduleDTO> parseScheduleExcel(MultipartFile file) throws IOException {
-        List<ScheduleDTO> schedules = new ArrayList<>();
+    private <T> int readRows(String type, Path path, RowMapper<T> mapper, Consumer<List<T>> consumer,
+                             ImportResult parseFailures) throws IOException {
+        // 耗时包含consumer中的入库
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            int count = readRows(path, mapper, consumer, parseFailures);
+            outcome = "success";
+            meterRegistry.summary("hospital.excel.import.rows", "type", type).record(count);
+            return count;
+        } finally {
+            sample.stop(meterRegistry.timer("hospital.excel.import", "type", type, "outcome", outcome));
+        }
+    }
+    
+    private <T> int readRows(Path path, RowMapper<T> mapper, Consumer<List<T>> consumer,
+                             ImportResult parseFailures) throws IOException {
+        RowBatcher<T> batcher = new RowBatcher<>(mapper, consumer, importChunkSize, parseFailures);
         
-        try (Workbook workbook = WorkbookFactory.create(file.getInputStream())) {
+        FileMagic magic;
+        try (InputStream in = FileMagic.prepareToCheckMagic(Files.newInputStream(path))) {
+            magic = FileMagic.valueOf(in);
+        }
+        
+        if (magic == FileMagic.OOXML) {
+            readXlsxRows(path, batcher);
+        } else {
+            readWorkbookRows(path, batcher);
+        }
+        batcher.flush();
+        return batcher.count;
+    }
+    
+    /**
+     * SAX方式读取xlsx
+     */
+    private void readXlsxRows(Path path, RowBatcher<?> batcher) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        styles, null, strings, new RowCollector(batcher), new ImportDataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Excel文件解析失败：" + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 非xlsx格式回退到完整加载
+     */
+    private void readWorkbookRows(Path path, RowBatcher<?> batcher) throws IOException {
+        try (Workbook workbook = WorkbookFactory.create(path.toFile(), null, true)) {
             Sheet sheet = workbook.getSheetAt(0);
             
+            // 跳过表头，从第二行开始
             for (int i = 1; i <= sheet.getLastRowNum(); i++) {
                 Row row = sheet.getRow(i);
                 if (row == null) continue;
                 
-                ScheduleDTO dto = new ScheduleDTO();
-                dto.setDoctorId(getCellStringValue(row.getCell(0)));
-                
-                String dateStr = getCellStringValue(row.getCell(1));
-                if (dateStr != null && !dateStr.isEmpty()) {
-                    dto.setWorkDate(LocalDate.parse(dateStr, DATE_FORMATTER));
-                }
-                
-                String startTimeStr = getCellStringValue(row.getCell(2));
-                if (startTimeStr != null && !startTimeStr.isEmpty()) {
-                    dto.setStartTime(LocalTime.parse(startTimeStr, TIME_FORMATTER));
-                }
-                
-                String endTimeStr = getCellStringValue(row.getCell(3));
-                if (endTimeStr != null && !endTimeStr.isEmpty()) {
-                    dto.setEndTime(LocalTime.parse(endTimeStr, TIME_FORMATTER));
+                String[] cells = new String[Math.max(row.getLastCellNum(), 0)];
+                for (int c = 0; c < cells.length; c++) {
+                    cells[c] = getCellStringValue(row.getCell(c));
                 }
-                
-                String maxPatientsStr = getCellStringValue(row.getCell(4));
-                if (maxPatientsStr != null && !maxPatientsStr.isEmpty()) {
-                    dto.setMaxPatients(Integer.parseInt(maxPatientsStr));
-                }
-                
-                // 跳过无效行
-                if (dto.getDoctorId() == null || dto.getWorkDate() == null) {
-                    continue;
-                }
-                
-                schedules.add(dto);
+                batcher.accept(i + 1, cells);
             }
         }
-        
-        return schedules;
+    }
+    
+    private static String cellAt(String[] cells, int index) {
+        return index < cells.length ? cells[index] : null;
     }
     
     /**
-     * 导出预约记录到Excel
+     * 打开预约记录流式导出
+     * 
+     * 使用SXSSF只在内存中保留最近的若干行，其余行写入临时文件；
+     * 列宽预先设定，不再逐个单元格测量。调用方分批写入后调用finish输出，最后关闭；
+     * 未调用finish就关闭（写入过程中出错）时不输出任何内容，由异常处理返回错误响应
      */
-    public void exportAppointments(List<Appointment> appointments, HttpServletResponse response) throws IOException {
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("预约记录");
+    public AppointmentExportWriter openAppointmentExport(HttpServletResponse response) {
+        String fileName = "预约记录_" + LocalDate.now().format(DATE_FORMATTER) + ".xlsx";
+        return new AppointmentExportWriter(response, fileName, meterRegistry);
+    }
+    
+    /**
+     * 预约记录流式写入器
+     */
+    public static class AppointmentExportWriter implements Closeable {
+        
+        private static final String[] HEADERS = {"预约号", "患者ID", "患者姓名", "医生ID", "医生姓名", "科室", "预约时间", "状态", "创建时间"};
+        
+        // 列宽（字符数），中文按两个字符计
+        private static final int[] COLUMN_WIDTHS = {16, 14, 14, 12, 14, 16, 18, 10, 18};
+        
+        // 内存中保留的行数
+        private static final int WINDOW_SIZE = 100;
+        
+        private final HttpServletResponse response;
+        
+        private final String fileName;
+        
+        private final MeterRegistry meterRegistry;
+        
+        private final Timer.Sample sample;
+        
+        private final SXSSFWorkbook workbook;
+        
+        private final Sheet sheet;
+        
+        private int rowNum = 1;
+        
+        private boolean finished;
+        
+        AppointmentExportWriter(HttpServletResponse response, String fileName, MeterRegistry meterRegistry) {
+            this.response = response;
+            this.fileName = fileName;
+            this.meterRegistry = meterRegistry;
+            this.sample = Timer.start(meterRegistry);
+            this.workbook = new SXSSFWorkbook(WINDOW_SIZE);
+            this.workbook.setCompressTempFiles(true);
+            this.sheet = workbook.createSheet("预约记录");
             
             // 创建表头样式
             CellStyle headerStyle = workbook.createCellStyle();
@@ -138,17 +307,20 @@ public class ExcelUtil {
             headerFont.setBold(true);
             headerStyle.setFont(headerFont);
             
-            // 创建表头
+            // 创建表头并设置列宽
             Row headerRow = sheet.createRow(0);
-            String[] headers = {"预约号", "患者ID", "患者姓名", "医生ID", "医生姓名", "科室", "预约时间", "状态", "创建时间"};
-            for (int i = 0; i < headers.length; i++) {
+            for (int i = 0; i < HEADERS.length; i++) {
                 Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
+                cell.setCellValue(HEADERS[i]);
                 cell.setCellStyle(headerStyle);
+                sheet.setColumnWidth(i, COLUMN_WIDTHS[i] * 256);
             }
-            
-            // 填充数据
-            int rowNum = 1;
+        }
+        
+        /**
+         * 写入一批预约记录
+         */
+        public void write(List<Appointment> appointments) {
             for (Appointment appt : appointments) {
                 Row row = sheet.createRow(rowNum++);
                 row.createCell(0).setCellValue(appt.getApptId());
@@ -163,22 +335,33 @@ public class ExcelUtil {
                 row.createCell(8).setCellValue(appt.getCreatedAt() != null ? 
                         appt.getCreatedAt().format(DATETIME_FORMATTER) : "");
             }
-            
-            // 自动调整列宽
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-            }
-            
-            // 设置响应头
-            String fileName = "预约记录_" + LocalDate.now().format(DATE_FORMATTER) + ".xlsx";
+        }
+        
+        /**
+         * 所有记录写入完成后调用，设置响应头并输出工作簿
+         */
+        public void finish() throws IOException {
             response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
             response.setHeader("Content-Disposition", "attachment; filename=" + 
                     URLEncoder.encode(fileName, StandardCharsets.UTF_8));
-            
-            // 写入响应
             try (OutputStream out = response.getOutputStream()) {
                 workbook.write(out);
             }
+            finished = true;
+        }
+        
+        /**
+         * 删除临时文件；未完成finish时丢弃已写入的内容，不向响应输出
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                workbook.dispose();
+                workbook.close();
+            } finally {
+                sample.stop(meterRegistry.timer("hospital.excel.export", "outcome", finished ? "success" : "error"));
+                meterRegistry.summary("hospital.excel.export.rows").record(rowNum - 1);
+            }
         }
     }
     
@@ -289,4 +472,130 @@ public class ExcelUtil {
                 return null;
         }
     }
+    
+    /**
+     * 行转换，无效行返回null
+     */
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(String[] cells, int rowNum);
+    }
+    
+    /**
+     * 行转换与分批，每满一批回调一次
+     */
+    private static class RowBatcher<T> {
+        
+        private final RowMapper<T> mapper;
+        
+        private final Consumer<List<T>> consumer;
+        
+        private final int chunkSize;
+        
+        private final ImportResult parseFailures;
+        
+        private List<T> chunk;
+        
+        private int count;
+        
+        RowBatcher(RowMapper<T> mapper, Consumer<List<T>> consumer, int chunkSize, ImportResult parseFailures) {
+            this.mapper = mapper;
+            this.consumer = consumer;
+            this.chunkSize = chunkSize;
+            this.parseFailures = parseFailures;
+            this.chunk = new ArrayList<>(chunkSize);
+        }
+        
+        /**
+         * @param rowNum Excel行号（从1开始）
+         */
+        void accept(int rowNum, String[] cells) {
+            T item;
+            try {
+                item = mapper.map(cells, rowNum);
+            } catch (RuntimeException e) {
+                if (parseFailures == null) {
+                    throw e;
+                }
+                parseFailures.addFailure(rowNum, "数据格式错误：" + e.getMessage());
+                return;
+            }
+            if (item == null) {
+                return;
+            }
+            chunk.add(item);
+            count++;
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+        
+        void flush() {
+            if (!chunk.isEmpty()) {
+                consumer.accept(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+    }
+    
+    /**
+     * SAX行收集器，将单元格按列号放入数组
+     */
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        
+        private static final int MAX_COLUMNS = 16;
+        
+        private final RowBatcher<?> batcher;
+        
+        private String[] cells;
+        
+        private int nextColumn;
+        
+        RowCollector(RowBatcher<?> batcher) {
+            this.batcher = batcher;
+        }
+        
+        @Override
+        public void startRow(int rowNum) {
+            this.cells = new String[MAX_COLUMNS];
+            this.nextColumn = 0;
+        }
+        
+        @Override
+        public void endRow(int rowNum) {
+            // 跳过表头
+            if (rowNum > 0) {
+                batcher.accept(rowNum + 1, cells);
+            }
+        }
+        
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+            nextColumn = column + 1;
+            if (column < MAX_COLUMNS && formattedValue != null) {
+                String value = formattedValue.trim();
+                cells[column] = value.isEmpty() ? null : value;
+            }
+        }
+    }
+    
+    /**
+     * 导入用单元格格式化
+     * 日期输出为yyyy-MM-dd，纯时间输出为HH:mm，整数不带小数点和科学计数法
+     */
+    private static class ImportDataFormatter extends DataFormatter {
+        
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                LocalDateTime dateTime = DateUtil.getLocalDateTime(value);
+                return value < 1 ? dateTime.format(TIME_FORMATTER) : dateTime.toLocalDate().format(DATE_FORMATTER);
+            }
+            if (value == Math.floor(value) && !Double.isInfinite(value)) {
+                return String.valueOf((long) value);
+            }
+            return String.valueOf(value);
+        }
+    }
 }
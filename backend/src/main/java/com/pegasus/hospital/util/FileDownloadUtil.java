@@ -0,0 +1,60 @@
+package com.pegasus.hospital.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件下载工具类
+ * 
+ * 优先使用Tomcat的sendfile，由操作系统直接把文件内容发送到套接字，
+ * 不经过JVM堆；容器不支持时用FileChannel.transferTo输出
+ * 
+ * @author Pegasus Hospital Team
+ */
+public class FileDownloadUtil {
+    
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    
+    /**
+     * 以附件形式发送文件
+     * 
+     * @param allowSendfile 是否允许sendfile；sendfile在请求处理结束后才读取文件，
+     *                      发送后立即删除的临时文件必须传false
+     */
+    public static void sendFile(Path file, String fileName, String contentType, boolean allowSendfile,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            response.setContentType(contentType);
+            response.setContentLengthLong(size);
+            response.setHeader("Content-Disposition", "attachment; filename=" + 
+                    URLEncoder.encode(fileName, StandardCharsets.UTF_8));
+            
+            if (allowSendfile && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return;
+            }
+            
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            response.flushBuffer();
+        }
+    }
+}
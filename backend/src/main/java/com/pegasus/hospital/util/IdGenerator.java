@@ -15,6 +15,21 @@ public class IdGenerator {
     
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
     
+    /**
+     * 预约号每日序列名称前缀（见 {@link SequenceAllocator#nextDaily}）
+     */
+    public static final String APPT_SEQUENCE = "appt";
+    
+    /**
+     * 患者ID序列名称
+     */
+    public static final String PATIENT_SEQUENCE = "patient";
+    
+    /**
+     * 医生ID序列名称
+     */
+    public static final String DOCTOR_SEQUENCE = "doctor";
+    
     // 患者ID起始值
     private static final AtomicInteger patientIdSequence = new AtomicInteger(1000000000);
     
@@ -68,12 +83,19 @@ public class IdGenerator {
         }
         try {
             long current = Long.parseLong(maxId);
-            return String.format("%010d", current + 1);
+            return formatPatientId(current + 1);
         } catch (NumberFormatException e) {
             return "1000000001";
         }
     }
     
+    /**
+     * 按序列值生成患者ID（10位数字）
+     */
+    public static String formatPatientId(long seq) {
+        return String.format("%010d", seq);
+    }
+    
     /**
      * 从现有最大ID生成下一个医生ID
      * 
@@ -86,12 +108,19 @@ public class IdGenerator {
         }
         try {
             long current = Long.parseLong(maxId);
-            return String.format("%08d", current + 1);
+            return formatDoctorId(current + 1);
         } catch (NumberFormatException e) {
             return "10000001";
         }
     }
     
+    /**
+     * 按序列值生成医生ID（8位数字）
+     */
+    public static String formatDoctorId(long seq) {
+        return String.format("%08d", seq);
+    }
+    
     /**
      * 生成预约号（基于当日最大序号）
      * 
@@ -99,7 +128,17 @@ public class IdGenerator {
      * @return 新的预约号
      */
     public static String generateNextApptId(int maxSeq) {
-        String today = LocalDate.now().format(DATE_FORMATTER);
-        return today + String.format("%04d", maxSeq + 1);
+        return formatApptId(LocalDate.now(), maxSeq + 1);
+    }
+    
+    /**
+     * 按日期和当日序号生成预约号（12位数字：YYYYMMDD + 4位序号）
+     * 
+     * @param date 预约号日期
+     * @param seq 当日序号（由号段分配器分配）
+     * @return 预约号
+     */
+    public static String formatApptId(LocalDate date, long seq) {
+        return date.format(DATE_FORMATTER) + String.format("%04d", seq);
     }
 }
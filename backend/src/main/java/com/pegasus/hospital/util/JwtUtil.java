@@ -1,20 +1,34 @@
 package com.pegasus.hospital.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.pegasus.hospital.security.AuthPrincipal;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT工具类
  * 
- * 用于生成和验证JWT令牌
+ * 用于生成和验证JWT令牌。
+ * 签名密钥和解析器启动时构建一次；验证通过的令牌按哈希缓存其身份信息直到令牌过期，
+ * 同一令牌的后续请求不再重复验签和解析
  * 
  * @author Pegasus Hospital Team
  */
@@ -27,12 +41,31 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration;
     
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private SecretKey signingKey;
+    
+    private JwtParser parser;
+    
     /**
-     * 获取签名密钥
+     * 令牌SHA-256 -> 已验证的身份信息，条目在令牌过期时失效
      */
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private Cache<String, AuthPrincipal> claimsCache;
+    
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        claimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .build();
     }
     
     /**
@@ -54,7 +87,7 @@ public class JwtUtil {
                 .subject(userId)
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
@@ -65,11 +98,44 @@ public class JwtUtil {
      * @return Claims
      */
     public Claims parseToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "invalid";
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            outcome = "success";
+            return claims;
+        } catch (ExpiredJwtException e) {
+            outcome = "expired";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("hospital.auth.jwt.parse", "outcome", outcome));
+        }
+    }
+    
+    /**
+     * 验证令牌并一次性提取身份信息
+     * 
+     * @param token JWT令牌
+     * @return 身份信息
+     * @throws JwtException 令牌无效或已过期
+     */
+    public AuthPrincipal parsePrincipal(String token) {
+        String key = hash(token);
+        AuthPrincipal principal = claimsCache.getIfPresent(key);
+        if (principal != null && principal.expiresAt() > System.currentTimeMillis()) {
+            meterRegistry.counter("hospital.auth.jwt.cache", "result", "hit").increment();
+            return principal;
+        }
+        meterRegistry.counter("hospital.auth.jwt.cache", "result", "miss").increment();
+        
+        Claims claims = parseToken(token);
+        principal = new AuthPrincipal(
+                claims.get("userId", String.class),
+                claims.get("userType", String.class),
+                claims.get("name", String.class),
+                claims.getExpiration().getTime());
+        claimsCache.put(key, principal);
+        return principal;
     }
     
     /**
@@ -77,9 +143,9 @@ public class JwtUtil {
      */
     public boolean validateToken(String token) {
         try {
-            parseToken(token);
+            parsePrincipal(token);
             return true;
-        } catch (JwtException e) {
+        } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
     }
@@ -88,24 +154,21 @@ public class JwtUtil {
      * 从令牌中获取用户ID
      */
     public String getUserIdFromToken(String token) {
-        Claims claims = parseToken(token);
-        return claims.get("userId", String.class);
+        return parsePrincipal(token).userId();
     }
     
     /**
      * 从令牌中获取用户类型
      */
     public String getUserTypeFromToken(String token) {
-        Claims claims = parseToken(token);
-        return claims.get("userType", String.class);
+        return parsePrincipal(token).userType();
     }
     
     /**
      * 从令牌中获取用户姓名
      */
     public String getNameFromToken(String token) {
-        Claims claims = parseToken(token);
-        return claims.get("name", String.class);
+        return parsePrincipal(token).name();
     }
     
     /**
@@ -113,10 +176,42 @@ public class JwtUtil {
      */
     public boolean isTokenExpired(String token) {
         try {
-            Claims claims = parseToken(token);
-            return claims.getExpiration().before(new Date());
+            return parsePrincipal(token).expiresAt() <= System.currentTimeMillis();
         } catch (ExpiredJwtException e) {
             return true;
         }
     }
+    
+    /**
+     * 缓存条目在令牌过期时失效，读取不延长有效期
+     */
+    private static class UntilTokenExpiry implements Expiry<String, AuthPrincipal> {
+        
+        @Override
+        public long expireAfterCreate(String key, AuthPrincipal principal, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, principal.expiresAt() - System.currentTimeMillis()));
+        }
+        
+        @Override
+        public long expireAfterUpdate(String key, AuthPrincipal principal, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, principal, currentTime);
+        }
+        
+        @Override
+        public long expireAfterRead(String key, AuthPrincipal principal, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+    
+    /**
+     * 令牌的SHA-256摘要，作为缓存键，避免在内存中保存令牌原文
+     */
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
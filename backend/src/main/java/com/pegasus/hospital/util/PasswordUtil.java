@@ -1,18 +1,45 @@
 package com.pegasus.hospital.util;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 密码加密工具类
  * 
- * 使用SHA-256算法对密码进行加密
+ * 使用SHA-256算法对密码进行加密。
+ * 每个线程复用一个MessageDigest和摘要缓冲区，十六进制编码查表完成；
+ * 验证密码时直接与存储的十六进制串逐字节比较，比较时间与不匹配的位置无关。
+ * 验证耗时记录到全局指标注册表（hospital.auth.password.matches），两个计时器在类加载时创建，
+ * 每次验证不再构造标签和查找计时器
  * 
  * @author Pegasus Hospital Team
  */
 public class PasswordUtil {
     
+    private static final int HASH_LENGTH = 32;
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256算法不可用", e);
+        }
+    });
+    
+    private static final ThreadLocal<byte[]> HASH_BUFFER = ThreadLocal.withInitial(() -> new byte[HASH_LENGTH]);
+    
+    private static final Timer MATCH_TIMER = Metrics.timer("hospital.auth.password.matches", "outcome", "match");
+    
+    private static final Timer MISMATCH_TIMER = Metrics.timer("hospital.auth.password.matches", "outcome", "mismatch");
+    
     /**
      * SHA-256加密
      * 
@@ -23,14 +50,7 @@ public class PasswordUtil {
         if (password == null || password.isEmpty()) {
             throw new IllegalArgumentException("密码不能为空");
         }
-        
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
-            return bytesToHex(hash);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256算法不可用", e);
-        }
+        return bytesToHex(hash(password));
     }
     
     /**
@@ -41,24 +61,50 @@ public class PasswordUtil {
      * @return 是否匹配
      */
     public static boolean matches(String rawPassword, String encodedPassword) {
-        if (rawPassword == null || encodedPassword == null) {
+        if (rawPassword == null || rawPassword.isEmpty() || encodedPassword == null
+                || encodedPassword.length() != HASH_LENGTH * 2) {
             return false;
         }
-        return encrypt(rawPassword).equals(encodedPassword);
+        long start = System.nanoTime();
+        byte[] hash = hash(rawPassword);
+        int diff = 0;
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            int b = hash[i] & 0xff;
+            diff |= HEX[b >>> 4] ^ encodedPassword.charAt(i * 2);
+            diff |= HEX[b & 0x0f] ^ encodedPassword.charAt(i * 2 + 1);
+        }
+        boolean matched = diff == 0;
+        (matched ? MATCH_TIMER : MISMATCH_TIMER).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return matched;
+    }
+    
+    /**
+     * 计算SHA-256摘要，写入当前线程的缓冲区
+     * 返回的数组在同一线程下次调用前有效
+     */
+    private static byte[] hash(String password) {
+        MessageDigest digest = DIGEST.get();
+        byte[] buffer = HASH_BUFFER.get();
+        digest.update(password.getBytes(StandardCharsets.UTF_8));
+        try {
+            digest.digest(buffer, 0, HASH_LENGTH);
+        } catch (DigestException e) {
+            digest.reset();
+            throw new IllegalStateException(e);
+        }
+        return buffer;
     }
     
     /**
      * 字节数组转十六进制字符串
      */
     private static String bytesToHex(byte[] bytes) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : bytes) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            hex[i * 2] = HEX[b >>> 4];
+            hex[i * 2 + 1] = HEX[b & 0x0f];
         }
-        return hexString.toString();
+        return new String(hex);
     }
 }
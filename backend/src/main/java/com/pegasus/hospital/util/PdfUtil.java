@@ -12,15 +12,12 @@ import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.element.Table;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
-import com.pegasus.hospital.mapper.AppointmentMapper;
-import jakarta.servlet.http.HttpServletResponse;
+import com.pegasus.hospital.service.StatisticsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
@@ -38,7 +35,7 @@ import java.util.Map;
 public class PdfUtil {
     
     @Autowired
-    private AppointmentMapper appointmentMapper;
+    private StatisticsService statisticsService;
     
     private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy年MM月");
     
@@ -49,19 +46,15 @@ public class PdfUtil {
      * 1. 报告标题和时间范围
      * 2. 各科室预约量统计
      * 3. 医生工作量统计
+     * 
+     * @param out 输出流，由调用方关闭
      */
-    public void generateMonthlyReport(YearMonth month, HttpServletResponse response) throws IOException {
+    public void renderMonthlyReport(YearMonth month, OutputStream out) throws IOException {
+        // 左闭右开区间 [本月1日, 次月1日)
         LocalDate startDate = month.atDay(1);
-        LocalDate endDate = month.atEndOfMonth();
-        
-        // 设置响应头
-        String fileName = "月度统计报告_" + month.format(DateTimeFormatter.ofPattern("yyyy-MM")) + ".pdf";
-        response.setContentType("application/pdf");
-        response.setHeader("Content-Disposition", "attachment; filename=" + 
-                URLEncoder.encode(fileName, StandardCharsets.UTF_8));
+        LocalDate endDate = month.plusMonths(1).atDay(1);
         
-        try (OutputStream out = response.getOutputStream();
-             PdfWriter writer = new PdfWriter(out);
+        try (PdfWriter writer = new PdfWriter(out);
              PdfDocument pdf = new PdfDocument(writer);
              Document document = new Document(pdf)) {
             
@@ -111,7 +104,7 @@ public class PdfUtil {
                     .setMarginTop(10)
                     .setMarginBottom(10));
             
-            List<Map<String, Object>> deptStats = appointmentMapper.countByDepartment(startDate, endDate);
+            List<Map<String, Object>> deptStats = statisticsService.countByDepartment(startDate, endDate);
             Table deptTable = createStatsTable(new String[]{"科室名称", "预约量"}, deptStats, "dept_name", "count");
             document.add(deptTable);
             
@@ -122,7 +115,7 @@ public class PdfUtil {
                     .setMarginTop(20)
                     .setMarginBottom(10));
             
-            List<Map<String, Object>> doctorStats = appointmentMapper.countByDoctor(startDate, endDate);
+            List<Map<String, Object>> doctorStats = statisticsService.countByDoctor(startDate, endDate);
             Table doctorTable = createDoctorStatsTable(doctorStats);
             document.add(doctorTable);
             
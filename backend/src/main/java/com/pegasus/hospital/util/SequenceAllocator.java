@@ -0,0 +1,328 @@
+package com.pegasus.hospital.util;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 号段序列分配器
+ * 
+ * 每个节点从id_sequence表中一次租用一段连续序列号（号段），
+ * 之后在内存中用AtomicLong逐个分配，无需每次访问数据库；
+ * 号段用完时才租用下一段：一条自动提交的 UPDATE ... LAST_INSERT_ID(next_value + step) 推进序列，
+ * 由数据库行锁保证多节点之间不会重复，语句结束即释放行锁；
+ * 序列行不存在时（如每天第一次生成预约号）用 INSERT ... ON DUPLICATE KEY UPDATE 建行并租用，
+ * 不再先 SELECT ... FOR UPDATE 不存在的行，避免间隙锁互相等待。
+ * 
+ * 租用使用独立的小连接池，不占用业务连接池：调用方通常已在业务事务中持有一个连接，
+ * 等待号段的线程也各自持有连接，租用若再从业务连接池取连接，连接池耗尽时会互相等待直到超时。
+ * 租用不能在任何锁（包括ConcurrentHashMap的桶锁）内进行：
+ * 每个序列由取到租用权的一个线程在锁外租用，其余线程通过CompletableFuture等待结果；
+ * 号段剩余不足1/4时提前租用下一段，当前号段用完时通常无需等待。
+ * 
+ * 节点重启时未用完的号段（包括预取的号段）会被丢弃，序列号允许出现空洞
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@Component
+public class SequenceAllocator {
+    
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    
+    private static final String ADVANCE_SQL =
+            "UPDATE id_sequence SET next_value = LAST_INSERT_ID(next_value + ?) WHERE seq_name = ?";
+    
+    private static final String CREATE_SQL = "INSERT INTO id_sequence (seq_name, next_value) "
+            + "VALUES (?, LAST_INSERT_ID(? + ?)) ON DUPLICATE KEY UPDATE next_value = LAST_INSERT_ID(next_value + ?)";
+    
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+    
+    /**
+     * 租用号段专用连接池的连接数
+     */
+    @Value("${id-sequence.lease-pool-size:2}")
+    private int leasePoolSize;
+    
+    private HikariDataSource leaseDataSource;
+    
+    private final ConcurrentMap<String, Sequence> sequences = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        leaseDataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        leaseDataSource.setPoolName("HikariCP-Sequence");
+        leaseDataSource.setMaximumPoolSize(leasePoolSize);
+        leaseDataSource.setMinimumIdle(1);
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        leaseDataSource.close();
+    }
+    
+    /**
+     * 获取序列的下一个值
+     * 
+     * @param seqName 序列名称
+     * @param step 每次租用的号段长度
+     * @param initialValue 序列不存在时的起始值（只在首次创建序列时，在调用线程中调用）
+     * @return 下一个序列值
+     */
+    public long next(String seqName, int step, LongSupplier initialValue) {
+        Sequence sequence = sequences.computeIfAbsent(seqName, name -> new Sequence());
+        while (true) {
+            Segment segment = sequence.current;
+            if (segment != null) {
+                long value = segment.next();
+                if (value >= 0) {
+                    if (segment.remaining() <= step / 4) {
+                        prefetch(sequence, seqName, step, initialValue);
+                    }
+                    return value;
+                }
+            }
+            // 号段用完，等待（或自己执行）下一段的租用，然后切换到新号段
+            CompletableFuture<Segment> pending = sequence.claimOrJoin(segment);
+            if (pending == null) {
+                continue;
+            }
+            Segment leased;
+            if (pending.isDone() || !sequence.isLeader(pending)) {
+                leased = join(pending);
+            } else {
+                leased = leaseInto(sequence, pending, seqName, step, initialValue);
+            }
+            sequence.advance(pending, leased);
+        }
+    }
+    
+    /**
+     * 一次性租用一段连续序列号，供批量创建使用
+     * 
+     * 与next共用同一序列但不占用内存中的号段，只访问一次数据库
+     * 
+     * @param count 需要的序列号个数
+     * @return 起始值，返回区间为 [起始值, 起始值 + count)
+     */
+    public long nextBlock(String seqName, int count, LongSupplier initialValue) {
+        return lease(seqName, count, initialValue).next();
+    }
+    
+    /**
+     * 获取按日重置的序列的下一个值
+     * 
+     * 序列名称为 前缀:yyyyMMdd，跨过零点后自动切换到新一天的序列，
+     * 并丢弃同一前缀前一天剩余的号段
+     */
+    public long nextDaily(String prefix, LocalDate date, int step, LongSupplier initialValue) {
+        String seqName = prefix + ":" + date.format(DATE_FORMATTER);
+        if (!sequences.containsKey(seqName)) {
+            sequences.keySet().removeIf(name -> name.startsWith(prefix + ":") && !name.equals(seqName));
+        }
+        return next(seqName, step, initialValue);
+    }
+    
+    /**
+     * 当前号段即将用完时，由一个线程提前租用下一段
+     * 预取失败不影响本次分配，号段真正用完时会重新租用
+     */
+    private void prefetch(Sequence sequence, String seqName, int step, LongSupplier initialValue) {
+        CompletableFuture<Segment> pending = sequence.claimPrefetch();
+        if (pending == null) {
+            return;
+        }
+        try {
+            leaseInto(sequence, pending, seqName, step, initialValue);
+        } catch (RuntimeException e) {
+            log.warn("预取号段失败: {}, {}", seqName, e.getMessage());
+        }
+    }
+    
+    /**
+     * 租用号段并把结果交给等待的线程，失败时清除租用状态以便重试
+     */
+    private Segment leaseInto(Sequence sequence, CompletableFuture<Segment> pending,
+                              String seqName, int step, LongSupplier initialValue) {
+        try {
+            Segment leased = lease(seqName, step, initialValue);
+            pending.complete(leased);
+            return leased;
+        } catch (RuntimeException | Error e) {
+            sequence.abandon(pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    private static Segment join(CompletableFuture<Segment> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * 在租用专用连接上租用一个号段，每条语句自动提交
+     * 
+     * 直接从专用连接池取连接，不经过DataSourceUtils：调用方在事务中时，
+     * 经DataSourceUtils获取的连接会绑定到调用方事务，直到事务结束才归还
+     */
+    private Segment lease(String seqName, int step, LongSupplier initialValue) {
+        try (Connection connection = leaseDataSource.getConnection()) {
+            try (PreparedStatement advance = connection.prepareStatement(ADVANCE_SQL)) {
+                advance.setInt(1, step);
+                advance.setString(2, seqName);
+                if (advance.executeUpdate() > 0) {
+                    long end = lastInsertId(connection);
+                    return new Segment(end - step, end);
+                }
+            }
+            // 序列行不存在：建行并租用第一段，其他节点同时建行时按已存在处理
+            long initial = initialValue.getAsLong();
+            try (PreparedStatement create = connection.prepareStatement(CREATE_SQL)) {
+                create.setString(1, seqName);
+                create.setLong(2, initial);
+                create.setInt(3, step);
+                create.setInt(4, step);
+                create.executeUpdate();
+            }
+            long end = lastInsertId(connection);
+            return new Segment(end - step, end);
+        } catch (SQLException e) {
+            throw new IllegalStateException("租用号段失败: " + seqName, e);
+        }
+    }
+    
+    /**
+     * 本连接上一条 LAST_INSERT_ID(expr) 的值，即租用后序列的下一个可分配值
+     */
+    private static long lastInsertId(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT LAST_INSERT_ID()")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+    
+    /**
+     * 单个序列的内存状态：正在使用的号段，以及正在租用或已预取的下一段
+     * 锁只保护状态切换，不在锁内访问数据库
+     */
+    private static class Sequence {
+        
+        private volatile Segment current;
+        
+        /**
+         * 下一段号段的租用结果，为null时没有进行中的租用
+         */
+        private CompletableFuture<Segment> next;
+        
+        /**
+         * 取得租用权的线程
+         */
+        private Thread leader;
+        
+        /**
+         * 号段用完时调用：没有进行中的租用则由当前线程负责租用
+         * 
+         * @param exhausted 调用方看到的已用完的号段
+         * @return 下一段的租用结果；号段已被其他线程切换时返回null
+         */
+        synchronized CompletableFuture<Segment> claimOrJoin(Segment exhausted) {
+            if (current != exhausted) {
+                return null;
+            }
+            if (next == null) {
+                next = new CompletableFuture<>();
+                leader = Thread.currentThread();
+            }
+            return next;
+        }
+        
+        /**
+         * 提前租用：没有进行中的租用时由当前线程负责，否则返回null
+         */
+        synchronized CompletableFuture<Segment> claimPrefetch() {
+            if (next != null) {
+                return null;
+            }
+            next = new CompletableFuture<>();
+            leader = Thread.currentThread();
+            return next;
+        }
+        
+        synchronized boolean isLeader(CompletableFuture<Segment> pending) {
+            return next == pending && leader == Thread.currentThread();
+        }
+        
+        /**
+         * 切换到租用到的号段（多个等待线程中只有第一个生效）
+         */
+        synchronized void advance(CompletableFuture<Segment> pending, Segment leased) {
+            if (next == pending) {
+                current = leased;
+                next = null;
+                leader = null;
+            }
+        }
+        
+        synchronized void abandon(CompletableFuture<Segment> pending) {
+            if (next == pending) {
+                next = null;
+                leader = null;
+            }
+        }
+    }
+    
+    /**
+     * 内存中的号段 [start, end)
+     */
+    private static class Segment {
+        
+        private final AtomicLong next;
+        
+        private final long end;
+        
+        Segment(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+        
+        /**
+         * @return 下一个值，号段用完时返回-1
+         */
+        long next() {
+            long value = next.getAndIncrement();
+            return value < end ? value : -1;
+        }
+        
+        long remaining() {
+            return Math.max(0, end - next.get());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.pegasus.hospital.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务回调工具类
+ * 
+ * 用于让内存状态（号源库存、缓存等）与数据库事务结果保持一致：
+ * 只有事务提交后才对外可见，事务回滚时撤销内存中的预占
+ * 
+ * @author Pegasus Hospital Team
+ */
+public class TransactionUtil {
+    
+    /**
+     * 事务提交后执行
+     * 当前没有事务时立即执行
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    /**
+     * 事务未提交（回滚或提交失败）时执行
+     * 当前没有事务时不执行，由调用方自行处理失败
+     */
+    public static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
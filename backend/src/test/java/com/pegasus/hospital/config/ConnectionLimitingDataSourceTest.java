@@ -0,0 +1,93 @@
+package com.pegasus.hospital.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 并发连接限制测试
+ * 
+ * 所有许可都被外层事务占用时，持有许可的线程再次获取连接（REQUIRES_NEW）不能排队等待许可，
+ * 否则这些线程互相等待直到超时；没有持有连接的线程仍然受许可数限制
+ * 
+ * @author Pegasus Hospital Team
+ */
+class ConnectionLimitingDataSourceTest {
+    
+    private static final int PERMITS = 4;
+    
+    private static final long ACQUIRE_TIMEOUT_MS = 500;
+    
+    @Test
+    void nestedConnectionDoesNotWaitForPermit() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(target, PERMITS, ACQUIRE_TIMEOUT_MS);
+        
+        CountDownLatch allHoldOuter = new CountDownLatch(PERMITS);
+        CountDownLatch allHoldNested = new CountDownLatch(PERMITS);
+        ExecutorService executor = Executors.newFixedThreadPool(PERMITS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < PERMITS; i++) {
+                futures.add(executor.submit(() -> {
+                    try (Connection outer = dataSource.getConnection()) {
+                        allHoldOuter.countDown();
+                        allHoldOuter.await();
+                        try (Connection nested = dataSource.getConnection()) {
+                            assertNotSame(outer, nested);
+                            allHoldNested.countDown();
+                            allHoldNested.await(5, TimeUnit.SECONDS);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(0, allHoldNested.getCount());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(PERMITS, dataSource.getAvailablePermits());
+    }
+    
+    @Test
+    void threadsWithoutConnectionStillWaitForPermit() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(target, 1, ACQUIRE_TIMEOUT_MS);
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Connection held = dataSource.getConnection();
+        try {
+            Future<?> other = executor.submit(() -> {
+                dataSource.getConnection().close();
+                return null;
+            });
+            ExecutionException e = assertThrows(ExecutionException.class, () -> other.get(10, TimeUnit.SECONDS));
+            assertEquals(SQLTransientConnectionException.class, e.getCause().getClass());
+        } finally {
+            held.close();
+            executor.shutdownNow();
+        }
+        assertEquals(1, dataSource.getAvailablePermits());
+    }
+}
@@ -0,0 +1,142 @@
+package com.pegasus.hospital.controller;
+
+import com.pegasus.hospital.security.AuthContext;
+import com.pegasus.hospital.support.DatabaseTest;
+import com.pegasus.hospital.util.JwtUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.env.Environment;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 平台线程 / 虚拟线程模式负载测试
+ * 
+ * 启动完整的Web服务，CLIENTS个客户端同时循环请求 GET /api/appointment/my（认证 + 一次数据库查询），
+ * 客户端数多于Tomcat最大线程数，平台线程模式下多出的请求在连接队列中等待。
+ * 两个子类分别以两种模式运行，日志中输出吞吐量和延迟分位数供对比；要求所有请求都成功。
+ * 测试期间关闭慢查询日志，避免日志输出影响测量
+ * 
+ * 耗时较长，只在指定 -Dload.test=true 时运行：
+ * mvn test -Dload.test=true -Dtest='*ThreadLoadTest' -Dtest.db.url=...
+ * 
+ * @author Pegasus Hospital Team
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = "mybatis.slow-query.threshold-ms=0")
+abstract class AbstractThreadModeLoadTest extends DatabaseTest {
+    
+    private static final int CLIENTS = 400;
+    
+    private static final int REQUESTS_PER_CLIENT = 25;
+    
+    private static final String PATIENT_ID = "1000000001";
+    
+    @LocalServerPort
+    private int port;
+    
+    @Autowired
+    private JwtUtil jwtUtil;
+    
+    @Autowired
+    private Environment environment;
+    
+    @BeforeAll
+    static void requireLoadTest() {
+        assumeTrue(Boolean.getBoolean("load.test"), "未指定 -Dload.test=true，跳过负载测试");
+    }
+    
+    /**
+     * 是否以虚拟线程模式运行
+     */
+    protected abstract boolean virtualThreads();
+    
+    @Test
+    void concurrentRequestsAllSucceed() throws Exception {
+        assertEquals(virtualThreads(), environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false));
+        
+        String token = jwtUtil.generateToken(PATIENT_ID, AuthContext.TYPE_PATIENT, "负载测试");
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/appointment/my"))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        
+        // 预热：加载类、建立连接池
+        for (int i = 0; i < 200; i++) {
+            client.send(request, HttpResponse.BodyHandlers.ofString());
+        }
+        
+        long[] latencies = new long[CLIENTS * REQUESTS_PER_CLIENT];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        long elapsed;
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        long begin = System.nanoTime();
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        latencies[next.getAndIncrement()] = System.nanoTime() - begin;
+                        if (response.statusCode() != 200 || !response.body().contains("\"code\":200")) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+            elapsed = System.nanoTime() - begin;
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        Arrays.sort(latencies);
+        log.info("负载测试[{}] {}个客户端共{}个请求，耗时{}ms，吞吐量{}/s，延迟p50={}ms p99={}ms max={}ms",
+                virtualThreads() ? "虚拟线程" : "平台线程", CLIENTS, latencies.length,
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                Math.round(latencies.length / (elapsed / 1e9)),
+                millis(percentile(latencies, 0.50)), millis(percentile(latencies, 0.99)),
+                millis(latencies[latencies.length - 1]));
+        assertEquals(0, failures.get());
+    }
+    
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+    
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,14 @@
+package com.pegasus.hospital.controller;
+
+/**
+ * 平台线程模式（Tomcat线程池）负载测试
+ * 
+ * @author Pegasus Hospital Team
+ */
+class PlatformThreadLoadTest extends AbstractThreadModeLoadTest {
+    
+    @Override
+    protected boolean virtualThreads() {
+        return false;
+    }
+}
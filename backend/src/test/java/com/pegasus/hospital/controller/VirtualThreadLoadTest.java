@@ -0,0 +1,20 @@
+package com.pegasus.hospital.controller;
+
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 虚拟线程模式（virtual profile，含数据库并发限制）负载测试，需要Java 21运行
+ * 
+ * @author Pegasus Hospital Team
+ */
+@ActiveProfiles("virtual")
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadLoadTest extends AbstractThreadModeLoadTest {
+    
+    @Override
+    protected boolean virtualThreads() {
+        return true;
+    }
+}
@@ -0,0 +1,191 @@
+package com.pegasus.hospital.mapper;
+
+import com.pegasus.hospital.support.DatabaseTest;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 预约查询执行计划回归测试
+ * 
+ * 对AppointmentMapper中按appt_datetime区间过滤的语句执行EXPLAIN，
+ * 要求appointment表不是全表扫描（type != ALL）且使用预期的索引；
+ * 有人重新给列套上DATE()等函数或删除索引时测试失败。
+ * 
+ * SQL取自MyBatis实际生成的语句，测试数据约两万条、覆盖一年，使优化器按真实选择性选择索引
+ * 
+ * @author Pegasus Hospital Team
+ */
+class AppointmentMapperExplainTest extends DatabaseTest {
+    
+    private static final String MAPPER = AppointmentMapper.class.getName() + ".";
+    
+    private static final int DAYS = 365;
+    
+    private static final int PER_DAY = 60;
+    
+    private static final String PATIENT_ID = "8000000001";
+    
+    private static final String[] DOCTOR_IDS = {"10000001", "10000002", "10000003", "10000004", "10000005"};
+    
+    private static boolean seeded;
+    
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private final LocalDate baseDate = LocalDate.now().minusDays(DAYS);
+    
+    @BeforeEach
+    void seed() {
+        synchronized (AppointmentMapperExplainTest.class) {
+            if (seeded) {
+                return;
+            }
+            jdbcTemplate.update("INSERT INTO patient (patient_id, name, password, identity_id) VALUES (?, ?, ?, ?)",
+                    PATIENT_ID, "执行计划测试", "x", "800000000000000001");
+            jdbcTemplate.update("INSERT INTO schedule (doctor_id, work_date, start_time, end_time, max_patients) "
+                    + "VALUES (?, ?, '06:00:00', '07:00:00', 1)", DOCTOR_IDS[0], baseDate);
+            Long scheduleId = jdbcTemplate.queryForObject(
+                    "SELECT id FROM schedule WHERE doctor_id = ? AND work_date = ? AND start_time = '06:00:00'",
+                    Long.class, DOCTOR_IDS[0], baseDate);
+            
+            List<Object[]> rows = new ArrayList<>(DAYS * PER_DAY);
+            for (int day = 0; day < DAYS; day++) {
+                for (int i = 0; i < PER_DAY; i++) {
+                    int n = day * PER_DAY + i;
+                    // 约10%已取消、20%已完成，其余已预约
+                    String status = n % 10 == 0 ? "已取消" : n % 10 < 3 ? "已完成" : "已预约";
+                    rows.add(new Object[]{String.format("7%011d", n), PATIENT_ID, DOCTOR_IDS[n % DOCTOR_IDS.length],
+                            scheduleId, baseDate.plusDays(day).atTime(8, 0).plusMinutes(i * 5L), status});
+                }
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO appointment "
+                    + "(appt_id, patient_id, doctor_id, schedule_id, appt_datetime, status) VALUES (?, ?, ?, ?, ?, ?)", rows);
+            jdbcTemplate.execute("ANALYZE TABLE appointment");
+            seeded = true;
+        }
+    }
+    
+    @Test
+    void pageByDateRangeUsesDatetimeIndex() {
+        assertUsesIndex("selectPageWithDetails", params(null, day(100), day(101), null), "idx_appt_datetime");
+    }
+    
+    @Test
+    void pageByStatusAndDateRangeUsesStatusIndex() {
+        assertUsesIndex("selectPageWithDetails", params("已取消", day(100), day(107), null), "idx_status_datetime");
+    }
+    
+    @Test
+    void pageByDepartmentDoesNotScanAppointments() {
+        assertUsesIndex("selectPageWithDetails", params(null, day(100), day(101), 1L),
+                "idx_appt_datetime", "idx_doctor_datetime");
+    }
+    
+    @Test
+    void pageByDoctorUsesDoctorIndex() {
+        Map<String, Object> params = params(null, day(100), day(107), null);
+        params.put("doctorId", DOCTOR_IDS[0]);
+        assertUsesIndex("selectPageWithDetails", params, "idx_doctor_datetime");
+    }
+    
+    @Test
+    void seekPageUsesDatetimeIndex() {
+        Map<String, Object> params = params(null, day(100), day(130), null);
+        params.put("cursorTime", day(120).plusHours(12));
+        params.put("cursorId", 100000L);
+        params.put("limit", 21);
+        assertUsesIndex("selectSeekPage", params, "idx_appt_datetime");
+    }
+    
+    @Test
+    void firstSeekPageWithoutFiltersReadsIndexInOrder() {
+        Map<String, Object> params = params(null, null, null, null);
+        params.put("limit", 21);
+        assertUsesIndex("selectSeekPage", params, "idx_appt_datetime");
+    }
+    
+    @Test
+    void countByDateRangeUsesDatetimeIndex() {
+        assertUsesIndex("countForPage", params(null, day(100), day(101), null), "idx_appt_datetime");
+    }
+    
+    @Test
+    void exportByDateRangeUsesDatetimeIndex() {
+        assertUsesIndex("streamForExport", params(null, day(100), day(101), null), "idx_appt_datetime");
+    }
+    
+    @Test
+    void doctorRangeUsesDoctorIndex() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("doctorId", DOCTOR_IDS[1]);
+        params.put("startTime", day(100));
+        params.put("endTime", day(101));
+        assertUsesIndex("selectByDoctorAndTime", params, "idx_doctor_datetime");
+    }
+    
+    private LocalDateTime day(int offset) {
+        return baseDate.plusDays(offset).atStartOfDay();
+    }
+    
+    private static Map<String, Object> params(String status, LocalDateTime startTime, LocalDateTime endTime, Long deptId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("status", status);
+        params.put("startTime", startTime);
+        params.put("endTime", endTime);
+        params.put("deptId", deptId);
+        params.put("doctorId", null);
+        params.put("cursorTime", null);
+        params.put("cursorId", null);
+        return params;
+    }
+    
+    /**
+     * EXPLAIN语句，检查appointment表的访问方式
+     * 
+     * @param expectedKeys appointment表允许使用的索引（任一即可）
+     */
+    private void assertUsesIndex(String statementId, Map<String, Object> params, String... expectedKeys) {
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        MappedStatement statement = configuration.getMappedStatement(MAPPER + statementId);
+        BoundSql boundSql = statement.getBoundSql(params);
+        MetaObject metaObject = configuration.newMetaObject(params);
+        List<Object> args = new ArrayList<>();
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            args.add(metaObject.getValue(mapping.getProperty()));
+        }
+        
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + boundSql.getSql(), args.toArray());
+        List<Map<String, Object>> appointmentRows = plan.stream()
+                .filter(row -> "a".equals(row.get("table")) || "appointment".equals(row.get("table")))
+                .toList();
+        assertFalse(appointmentRows.isEmpty(), () -> statementId + " 执行计划中没有appointment表: " + plan);
+        for (Map<String, Object> row : appointmentRows) {
+            assertNotEquals("ALL", row.get("type"), () -> statementId + " 全表扫描appointment: " + plan);
+            assertTrue(Set.of(expectedKeys).contains(String.valueOf(row.get("key"))),
+                    () -> statementId + " 未使用预期索引 " + Set.of(expectedKeys) + ": " + plan);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.pegasus.hospital.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pegasus.hospital.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT认证的每请求开销基准
+ * 
+ * anonymous 为不带令牌的请求（模拟请求对象本身的开销），cachedToken 为令牌命中身份缓存时过滤一个请求，
+ * verifyToken 为缓存未命中时的完整验签解析。
+ * 
+ * 运行：mvn -P jmh -DskipTests test -Djmh.args="AuthFilterBenchmark -prof gc"
+ * 
+ * @author Pegasus Hospital Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthFilterBenchmark {
+    
+    private static final String SECRET = "PegasusHospitalSecretKey2024VeryLongSecretKeyForJWT";
+    
+    private JwtUtil jwtUtil;
+    
+    private JwtAuthenticationFilter filter;
+    
+    private String token;
+    
+    private FilterChain chain;
+    
+    private volatile AuthPrincipal seen;
+    
+    @Setup
+    public void setup() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 86400000L);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaxSize", 10000L);
+        ReflectionTestUtils.setField(jwtUtil, "meterRegistry", new SimpleMeterRegistry());
+        jwtUtil.init();
+        
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper());
+        
+        token = jwtUtil.generateToken("1000000001", AuthContext.TYPE_PATIENT, "测试患者");
+        jwtUtil.parsePrincipal(token);
+        chain = (request, response) -> seen = (AuthPrincipal) request.getAttribute(AuthContext.ATTRIBUTE);
+    }
+    
+    @Benchmark
+    public AuthPrincipal anonymous() throws ServletException, IOException {
+        filter.doFilter(newRequest(), new MockHttpServletResponse(), chain);
+        return seen;
+    }
+    
+    @Benchmark
+    public AuthPrincipal cachedToken() throws ServletException, IOException {
+        MockHttpServletRequest request = newRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return seen;
+    }
+    
+    @Benchmark
+    public Claims verifyToken() {
+        return jwtUtil.parseToken(token);
+    }
+    
+    private static MockHttpServletRequest newRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/appointment/my");
+        request.setContextPath("/api");
+        return request;
+    }
+}
@@ -0,0 +1,171 @@
+package com.pegasus.hospital.service;
+
+import com.pegasus.hospital.config.BookingLockMode;
+import com.pegasus.hospital.dto.AppointmentRequest;
+import com.pegasus.hospital.exception.BookingException;
+import com.pegasus.hospital.support.DatabaseTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 并发预约测试：N个患者同时预约容量为M（M &lt; N）的排班
+ * 
+ * 无论哪种并发控制模式，都必须恰好M个预约成功、其余因号源已满失败，
+ * 且数据库中的booked_count和预约记录数都等于M（不超卖、不少卖）。
+ * 乐观锁模式下冲突的请求按提示重试，与前端行为一致
+ * 
+ * @author Pegasus Hospital Team
+ */
+abstract class AbstractBookingConcurrencyTest extends DatabaseTest {
+    
+    private static final String DOCTOR_ID = "10000001";
+    
+    private static final int CAPACITY = 15;
+    
+    private static final int CLIENTS = 40;
+    
+    /**
+     * 乐观锁冲突后的最大重试次数，防止测试在异常情况下无限循环
+     */
+    private static final int MAX_ATTEMPTS = 100;
+    
+    /**
+     * 同一JVM中各测试类使用不同的排班时段和患者ID
+     */
+    private static final AtomicInteger RUN = new AtomicInteger();
+    
+    @Autowired
+    private AppointmentService appointmentService;
+    
+    @Autowired
+    private BookingLockMode lockMode;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    protected abstract BookingLockMode expectedLockMode();
+    
+    @Test
+    void parallelBookingsFillScheduleExactly() throws Exception {
+        assertEquals(expectedLockMode(), lockMode);
+        
+        int run = RUN.incrementAndGet();
+        LocalDate workDate = LocalDate.now().plusDays(1);
+        LocalTime startTime = LocalTime.of(18, 0).plusMinutes(run);
+        long scheduleId = insertSchedule(workDate, startTime, CAPACITY);
+        List<String> patientIds = insertPatients(run, CLIENTS);
+        
+        Map<String, AtomicInteger> outcomes = new ConcurrentHashMap<>();
+        AtomicInteger conflicts = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String patientId : patientIds) {
+                AppointmentRequest request = new AppointmentRequest();
+                request.setPatientId(patientId);
+                request.setDoctorId(DOCTOR_ID);
+                request.setScheduleId(scheduleId);
+                request.setApptDatetime(workDate.atTime(startTime));
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    String outcome = book(request, conflicts);
+                    outcomes.computeIfAbsent(outcome, k -> new AtomicInteger()).incrementAndGet();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        assertEquals(CAPACITY, count(outcomes, BookingException.OUTCOME_SUCCESS), () -> "outcomes: " + outcomes);
+        assertEquals(CLIENTS - CAPACITY, count(outcomes, BookingException.OUTCOME_FULL), () -> "outcomes: " + outcomes);
+        assertEquals(CAPACITY, jdbcTemplate.queryForObject(
+                "SELECT booked_count FROM schedule WHERE id = ?", Integer.class, scheduleId));
+        assertEquals(CAPACITY, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM appointment WHERE schedule_id = ? AND status = '已预约'", Integer.class, scheduleId));
+        if (lockMode == BookingLockMode.ATOMIC) {
+            // 原子更新模式下不应出现需要重试的冲突
+            assertEquals(0, conflicts.get());
+        }
+    }
+    
+    /**
+     * 预约一次，乐观锁冲突时重试
+     * 
+     * @return 最终结果的outcome
+     */
+    private String book(AppointmentRequest request, AtomicInteger conflicts) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try {
+                appointmentService.book(request);
+                return BookingException.OUTCOME_SUCCESS;
+            } catch (BookingException e) {
+                if (!BookingException.OUTCOME_CONFLICT.equals(e.getOutcome())) {
+                    return e.getOutcome();
+                }
+                conflicts.incrementAndGet();
+            } catch (RuntimeException e) {
+                return BookingException.OUTCOME_ERROR + ": " + e.getMessage();
+            }
+        }
+        return "too-many-conflicts";
+    }
+    
+    private static int count(Map<String, AtomicInteger> outcomes, String outcome) {
+        AtomicInteger count = outcomes.get(outcome);
+        return count != null ? count.get() : 0;
+    }
+    
+    private long insertSchedule(LocalDate workDate, LocalTime startTime, int capacity) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO schedule (doctor_id, work_date, start_time, end_time, max_patients, booked_count, version) "
+                            + "VALUES (?, ?, ?, ?, ?, 0, 0)", Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, DOCTOR_ID);
+            ps.setObject(2, workDate);
+            ps.setObject(3, startTime);
+            ps.setObject(4, startTime.plusMinutes(30));
+            ps.setInt(5, capacity);
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+    
+    private List<String> insertPatients(int run, int count) {
+        List<String> patientIds = new ArrayList<>(count);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String patientId = String.format("9%03d%06d", run, i);
+            patientIds.add(patientId);
+            rows.add(new Object[]{patientId, "并发测试" + i, "x", String.format("%018d", Long.parseLong(patientId))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO patient (patient_id, name, password, identity_id) VALUES (?, ?, ?, ?)", rows);
+        return patientIds;
+    }
+}
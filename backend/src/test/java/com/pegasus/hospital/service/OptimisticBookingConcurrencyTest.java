@@ -0,0 +1,18 @@
+package com.pegasus.hospital.service;
+
+import com.pegasus.hospital.config.BookingLockMode;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * 乐观锁模式下的并发预约测试
+ * 
+ * @author Pegasus Hospital Team
+ */
+@TestPropertySource(properties = "booking.lock-mode=optimistic")
+class OptimisticBookingConcurrencyTest extends AbstractBookingConcurrencyTest {
+    
+    @Override
+    protected BookingLockMode expectedLockMode() {
+        return BookingLockMode.OPTIMISTIC;
+    }
+}
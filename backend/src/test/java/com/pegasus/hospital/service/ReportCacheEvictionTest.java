@@ -0,0 +1,58 @@
+package com.pegasus.hospital.service;
+
+import com.pegasus.hospital.entity.Appointment;
+import com.pegasus.hospital.support.DatabaseTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 已结束月份的报告缓存淘汰测试
+ * 
+ * 早于压实窗口的已结束月份中的预约被取消后，该月已缓存的报告被删除，
+ * 其他月份的缓存保留；同时验证统计服务对报告服务的延迟注入可以正常启动
+ * 
+ * @author Pegasus Hospital Team
+ */
+@TestPropertySource(properties = "report.cache-dir=${java.io.tmpdir}/pegasus-hospital/report-eviction-test")
+class ReportCacheEvictionTest extends DatabaseTest {
+    
+    @Autowired
+    private StatisticsService statisticsService;
+    
+    @Value("${report.cache-dir}")
+    private String cacheDir;
+    
+    @Test
+    void statusChangeInClosedMonthEvictsThatMonthOnly() throws Exception {
+        YearMonth closedMonth = YearMonth.now().minusMonths(2);
+        YearMonth otherMonth = closedMonth.minusMonths(1);
+        Path cachePath = Paths.get(cacheDir);
+        Path closedReport = Files.writeString(cachePath.resolve("monthly-" + closedMonth + "-test.pdf"), "pdf");
+        Path otherReport = Files.writeString(cachePath.resolve("monthly-" + otherMonth + "-test.pdf"), "pdf");
+        
+        try {
+            Appointment appointment = Appointment.builder()
+                    .doctorId("10000001")
+                    .apptDatetime(closedMonth.atDay(10).atTime(9, 0))
+                    .build();
+            // 没有事务时提交回调立即执行
+            statisticsService.recordStatusChange(appointment, Appointment.STATUS_BOOKED, Appointment.STATUS_CANCELLED);
+            
+            assertFalse(Files.exists(closedReport), "已结束月份的报告缓存未删除");
+            assertTrue(Files.exists(otherReport), "其他月份的报告缓存被误删");
+        } finally {
+            Files.deleteIfExists(closedReport);
+            Files.deleteIfExists(otherReport);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.pegasus.hospital.support;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 依赖MySQL的集成测试基类
+ * 
+ * 启动完整的Spring上下文并连接 {@link TestDatabase}；没有可用的测试数据库时整个测试类跳过。
+ * 测试不访问监控端点，关闭独立的管理端口，避免与本机已占用的8081端口冲突
+ * 
+ * @author Pegasus Hospital Team
+ */
+@SpringBootTest(properties = "management.server.port=-1")
+public abstract class DatabaseTest {
+    
+    @BeforeAll
+    static void requireDatabase() {
+        assumeTrue(TestDatabase.isAvailable(), "未指定 -Dtest.db.url 且Docker不可用，跳过数据库测试");
+    }
+    
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        TestDatabase database = TestDatabase.get();
+        registry.add("spring.datasource.url", database::getUrl);
+        registry.add("spring.datasource.username", database::getUsername);
+        registry.add("spring.datasource.password", database::getPassword);
+    }
+}
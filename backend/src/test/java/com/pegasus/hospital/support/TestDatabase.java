@@ -0,0 +1,160 @@
+package com.pegasus.hospital.support;
+
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 集成测试数据库
+ * 
+ * 优先使用 -Dtest.db.url 指定的数据库（必须是专用的测试库，表会被重建），
+ * 否则在Docker可用时启动MySQL 8容器；两者都不可用时依赖数据库的测试被跳过。
+ * 
+ * 每个JVM只初始化一次，表结构和示例数据来自 sql/init.sql
+ * 
+ * @author Pegasus Hospital Team
+ */
+public final class TestDatabase {
+    
+    /**
+     * 与application.yml中数据源URL相同的连接参数
+     */
+    private static final String URL_PARAMS = "useUnicode=true&characterEncoding=utf-8&serverTimezone=Asia/Shanghai"
+            + "&useSSL=false&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true";
+    
+    private static final Path INIT_SCRIPT = Paths.get("..", "sql", "init.sql");
+    
+    private static TestDatabase instance;
+    
+    private static Boolean available;
+    
+    private final String url;
+    
+    private final String username;
+    
+    private final String password;
+    
+    private TestDatabase(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+    
+    /**
+     * 是否有可用的测试数据库
+     */
+    public static synchronized boolean isAvailable() {
+        if (available == null) {
+            available = System.getProperty("test.db.url") != null
+                    || DockerClientFactory.instance().isDockerAvailable();
+        }
+        return available;
+    }
+    
+    /**
+     * 获取测试数据库，首次调用时启动容器并执行初始化脚本
+     */
+    public static synchronized TestDatabase get() {
+        if (instance == null) {
+            TestDatabase database = System.getProperty("test.db.url") != null ? external() : container();
+            database.initialize();
+            instance = database;
+        }
+        return instance;
+    }
+    
+    private static TestDatabase external() {
+        String url = System.getProperty("test.db.url");
+        if (!url.contains("?")) {
+            url = url + "?" + URL_PARAMS;
+        }
+        return new TestDatabase(url,
+                System.getProperty("test.db.username", "root"),
+                System.getProperty("test.db.password", "123456"));
+    }
+    
+    @SuppressWarnings("resource")
+    private static TestDatabase container() {
+        // 容器随JVM退出由Testcontainers清理
+        MySQLContainer<?> mysql = new MySQLContainer<>(DockerImageName.parse("mysql:8.0"))
+                .withDatabaseName("pegasus_hospital")
+                .withUsername("root")
+                .withPassword("test")
+                .withCommand("--character-set-server=utf8mb4", "--collation-server=utf8mb4_unicode_ci");
+        mysql.start();
+        return new TestDatabase(mysql.getJdbcUrl() + "?" + URL_PARAMS, mysql.getUsername(), mysql.getPassword());
+    }
+    
+    /**
+     * 执行 sql/init.sql
+     * 
+     * 跳过其中的 CREATE DATABASE / USE 语句，在当前连接的库中建表；
+     * 支持 DELIMITER 切换语句分隔符（存储过程）
+     */
+    private void initialize() {
+        try (Connection connection = openConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SET FOREIGN_KEY_CHECKS = 0");
+            for (String sql : splitScript(Files.readAllLines(INIT_SCRIPT, StandardCharsets.UTF_8))) {
+                String upper = sql.toUpperCase();
+                if (upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ")) {
+                    continue;
+                }
+                statement.execute(sql);
+            }
+            statement.execute("SET FOREIGN_KEY_CHECKS = 1");
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("初始化测试数据库失败: " + url, e);
+        }
+    }
+    
+    private static List<String> splitScript(List<String> lines) {
+        List<String> statements = new ArrayList<>();
+        String delimiter = ";";
+        StringBuilder current = new StringBuilder();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            if (trimmed.toUpperCase().startsWith("DELIMITER ")) {
+                delimiter = trimmed.substring("DELIMITER ".length()).trim();
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(delimiter)) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - delimiter.length()).trim());
+                current.setLength(0);
+            }
+        }
+        return statements;
+    }
+    
+    public Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+    
+    public String getUrl() {
+        return url;
+    }
+    
+    public String getUsername() {
+        return username;
+    }
+    
+    public String getPassword() {
+        return password;
+    }
+}
@@ -0,0 +1,197 @@
+package com.pegasus.hospital.util;
+
+import com.pegasus.hospital.dto.AppointmentRequest;
+import com.pegasus.hospital.entity.Appointment;
+import com.pegasus.hospital.exception.BookingException;
+import com.pegasus.hospital.support.DatabaseTest;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 合并预约并发测试：通过BookingCoalescer.book同时提交的请求
+ * 
+ * CLIENTS个患者同时预约容量为CAPACITY的排班，其中DUPLICATES个患者各提交两次。
+ * 要求每个请求都得到且只得到自己的结果：成功的请求拿到本人的预约，
+ * 失败的请求得到带outcome的BookingException（号源已满或重复预约）；
+ * 数据库中不超卖、同一患者不重复预约。合并窗口放宽到20ms，使请求确实按批次执行
+ * 
+ * @author Pegasus Hospital Team
+ */
+@TestPropertySource(properties = {"booking.coalesce.enabled=true", "booking.coalesce.window-ms=20"})
+class BookingCoalescerConcurrencyTest extends DatabaseTest {
+    
+    private static final String DOCTOR_ID = "10000002";
+    
+    private static final int CAPACITY = 15;
+    
+    private static final int CLIENTS = 40;
+    
+    private static final int DUPLICATES = 5;
+    
+    /**
+     * 乐观锁冲突后的最大重试次数，防止测试在异常情况下无限循环
+     */
+    private static final int MAX_ATTEMPTS = 100;
+    
+    @Autowired
+    private BookingCoalescer bookingCoalescer;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Test
+    void everyCallerGetsItsOwnResult() throws Exception {
+        LocalDate workDate = LocalDate.now().plusDays(1);
+        LocalTime startTime = LocalTime.of(19, 0);
+        long scheduleId = insertSchedule(workDate, startTime, CAPACITY);
+        List<String> patientIds = insertPatients(CLIENTS);
+        
+        List<AppointmentRequest> requests = new ArrayList<>();
+        for (int i = 0; i < CLIENTS + DUPLICATES; i++) {
+            AppointmentRequest request = new AppointmentRequest();
+            request.setPatientId(patientIds.get(i % CLIENTS));
+            request.setDoctorId(DOCTOR_ID);
+            request.setScheduleId(scheduleId);
+            request.setApptDatetime(workDate.atTime(startTime));
+            requests.add(request);
+        }
+        
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(requests.size());
+        List<Future<String>> futures = new ArrayList<>();
+        try {
+            for (AppointmentRequest request : requests) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return book(request);
+                }));
+            }
+            start.countDown();
+            
+            List<String> outcomes = new ArrayList<>();
+            for (Future<String> future : futures) {
+                outcomes.add(future.get(60, TimeUnit.SECONDS));
+            }
+            
+            Set<String> booked = new HashSet<>();
+            int full = 0;
+            int duplicate = 0;
+            for (int i = 0; i < requests.size(); i++) {
+                String patientId = requests.get(i).getPatientId();
+                String outcome = outcomes.get(i);
+                if (outcome.equals(BookingException.OUTCOME_SUCCESS)) {
+                    assertTrue(booked.add(patientId), () -> "患者重复预约成功: " + patientId);
+                } else if (outcome.equals(BookingException.OUTCOME_FULL)) {
+                    full++;
+                } else if (outcome.equals(BookingException.OUTCOME_DUPLICATE)) {
+                    duplicate++;
+                } else {
+                    throw new AssertionError("请求 " + i + " 的结果不正确: " + outcome);
+                }
+            }
+            for (int i = 0; i < requests.size(); i++) {
+                if (outcomes.get(i).equals(BookingException.OUTCOME_DUPLICATE)) {
+                    String patientId = requests.get(i).getPatientId();
+                    assertTrue(booked.contains(patientId), () -> "未预约成功的患者被判定为重复预约: " + patientId);
+                }
+            }
+            
+            assertEquals(CAPACITY, booked.size(), () -> "outcomes: " + outcomes);
+            assertEquals(requests.size() - CAPACITY, full + duplicate, () -> "outcomes: " + outcomes);
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        assertEquals(CAPACITY, jdbcTemplate.queryForObject(
+                "SELECT booked_count FROM schedule WHERE id = ?", Integer.class, scheduleId));
+        assertEquals(CAPACITY, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM appointment WHERE schedule_id = ? AND status = '已预约'", Integer.class, scheduleId));
+        assertEquals(CAPACITY, jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT patient_id) FROM appointment WHERE schedule_id = ?", Integer.class, scheduleId));
+        
+        DistributionSummary batchSize = meterRegistry.find("hospital.appointment.batch.size").summary();
+        assertTrue(batchSize != null && batchSize.count() > 0, "请求没有合并执行");
+        Timer succeeded = meterRegistry.find("hospital.appointment")
+                .tags("operation", "book", "outcome", BookingException.OUTCOME_SUCCESS).timer();
+        assertEquals(CAPACITY, succeeded != null ? succeeded.count() : 0, "每个成功的请求应记录一次预约指标");
+    }
+    
+    /**
+     * 预约一次，乐观锁冲突时重试
+     * 
+     * @return 最终结果的outcome
+     */
+    private String book(AppointmentRequest request) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try {
+                Appointment appointment = bookingCoalescer.book(request);
+                if (!request.getPatientId().equals(appointment.getPatientId())) {
+                    return "wrong-appointment: " + appointment.getApptId();
+                }
+                return BookingException.OUTCOME_SUCCESS;
+            } catch (BookingException e) {
+                if (!BookingException.OUTCOME_CONFLICT.equals(e.getOutcome())) {
+                    return e.getOutcome();
+                }
+            } catch (RuntimeException e) {
+                return BookingException.OUTCOME_ERROR + ": " + e.getMessage();
+            }
+        }
+        return "too-many-conflicts";
+    }
+    
+    private long insertSchedule(LocalDate workDate, LocalTime startTime, int capacity) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO schedule (doctor_id, work_date, start_time, end_time, max_patients, booked_count, version) "
+                            + "VALUES (?, ?, ?, ?, ?, 0, 0)", Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, DOCTOR_ID);
+            ps.setObject(2, workDate);
+            ps.setObject(3, startTime);
+            ps.setObject(4, startTime.plusMinutes(30));
+            ps.setInt(5, capacity);
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+    
+    private List<String> insertPatients(int count) {
+        List<String> patientIds = new ArrayList<>(count);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String patientId = String.format("8500%06d", i);
+            patientIds.add(patientId);
+            rows.add(new Object[]{patientId, "合并测试" + i, "x", String.format("%018d", Long.parseLong(patientId))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO patient (patient_id, name, password, identity_id) VALUES (?, ?, ?, ?)", rows);
+        return patientIds;
+    }
+}
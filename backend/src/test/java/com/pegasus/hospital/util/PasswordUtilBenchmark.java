@@ -0,0 +1,104 @@
+package com.pegasus.hospital.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PasswordUtil.matches 的耗时和分配量基准
+ * 
+ * pooledThread 为平台线程池模式：同一线程反复验证，复用线程内的MessageDigest和缓冲区；
+ * firstCallOnThread 在每次验证前清空线程本地变量，即虚拟线程模式下每个请求（每个新线程）首次验证的开销，
+ * 分配量可由 -prof gc 的 gc.alloc.rate.norm 直接读出；
+ * newThread / newThreadBaseline 在新线程中验证 / 什么也不做，两者之差为线程内首次验证的实际耗时
+ * （JDK 21及以上使用虚拟线程，否则使用平台线程）。
+ * 
+ * 运行：mvn -P jmh -DskipTests test -Djmh.args="PasswordUtilBenchmark -prof gc"
+ * 
+ * @author Pegasus Hospital Team
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordUtilBenchmark {
+    
+    private static final String PASSWORD = "123456";
+    
+    private String encoded;
+    
+    private ThreadLocal<?> digest;
+    
+    private ThreadLocal<?> hashBuffer;
+    
+    private ThreadFactory threadFactory;
+    
+    private volatile boolean result;
+    
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        encoded = PasswordUtil.encrypt(PASSWORD);
+        digest = threadLocal("DIGEST");
+        hashBuffer = threadLocal("HASH_BUFFER");
+        threadFactory = virtualThreadFactory();
+    }
+    
+    @Benchmark
+    public boolean pooledThread() {
+        return PasswordUtil.matches(PASSWORD, encoded);
+    }
+    
+    @Benchmark
+    public boolean firstCallOnThread() {
+        digest.remove();
+        hashBuffer.remove();
+        return PasswordUtil.matches(PASSWORD, encoded);
+    }
+    
+    @Benchmark
+    public boolean newThread() throws InterruptedException {
+        Thread thread = threadFactory.newThread(() -> result = PasswordUtil.matches(PASSWORD, encoded));
+        thread.start();
+        thread.join();
+        return result;
+    }
+    
+    @Benchmark
+    public boolean newThreadBaseline() throws InterruptedException {
+        Thread thread = threadFactory.newThread(() -> result = encoded != null);
+        thread.start();
+        thread.join();
+        return result;
+    }
+    
+    private static ThreadLocal<?> threadLocal(String name) throws ReflectiveOperationException {
+        Field field = PasswordUtil.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return (ThreadLocal<?>) field.get(null);
+    }
+    
+    /**
+     * Thread.ofVirtual().factory()，JDK 21以下没有虚拟线程时返回平台线程工厂
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Thread::new;
+        }
+    }
+}
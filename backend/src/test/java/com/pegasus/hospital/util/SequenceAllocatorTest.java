@@ -0,0 +1,126 @@
+package com.pegasus.hospital.util;
+
+import com.pegasus.hospital.support.DatabaseTest;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 号段序列分配测试
+ * 
+ * 业务连接池的连接全部被事务占用时，号段用完的线程仍能租到下一段（租用使用独立连接池），
+ * 并发分配的序列号不重复；按日序列跨过零点后从新一天的起始值开始，
+ * 新一天的序列行不存在时多个线程同时首次分配也不会重复或死锁
+ * 
+ * @author Pegasus Hospital Team
+ */
+class SequenceAllocatorTest extends DatabaseTest {
+    
+    private static final int STEP = 10;
+    
+    private static final int PER_THREAD = 100;
+    
+    @Autowired
+    private SequenceAllocator sequenceAllocator;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Test
+    void concurrentAllocationIsUniqueWhenPoolIsExhausted() throws Exception {
+        // 每个线程在事务中持有一个业务连接，线程数等于连接池大小
+        int threads = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        CountDownLatch allHoldConnection = new CountDownLatch(threads);
+        
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> transaction.execute(status -> {
+                    jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                    allHoldConnection.countDown();
+                    try {
+                        allHoldConnection.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        values.add(sequenceAllocator.next("test:pool", STEP, () -> 1));
+                    }
+                    return null;
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get(20, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        assertEquals(threads * PER_THREAD, values.size());
+    }
+    
+    @Test
+    void dailySequenceRestartsAfterMidnight() throws Exception {
+        LocalDate today = LocalDate.of(2099, 1, 1);
+        LocalDate tomorrow = today.plusDays(1);
+        assertEquals(1, sequenceAllocator.nextDaily("test-day", today, STEP, () -> 1));
+        assertEquals(2, sequenceAllocator.nextDaily("test-day", today, STEP, () -> 1));
+        
+        // 跨过零点：新一天的序列行尚不存在，多个线程同时首次分配
+        int threads = STEP / 2;
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    values.add(sequenceAllocator.nextDaily("test-day", tomorrow, STEP, () -> 1));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(20, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        Set<Long> expected = LongStream.rangeClosed(1, threads).boxed().collect(Collectors.toSet());
+        assertEquals(expected, values);
+        assertEquals(1 + STEP, jdbcTemplate.queryForObject(
+                "SELECT next_value FROM id_sequence WHERE seq_name = ?", Long.class, "test-day:20990102"));
+        assertEquals(1 + STEP, jdbcTemplate.queryForObject(
+                "SELECT next_value FROM id_sequence WHERE seq_name = ?", Long.class, "test-day:20990101"));
+    }
+}
@@ -0,0 +1,27 @@
+import client from "./client";
+
+// Download a file from an admin endpoint. window.location.href cannot send the
+// Authorization header, so fetch the file as a blob and save it from memory.
+export const downloadFile = async (url: string, fileName: string, params?: Record<string, string>) => {
+  let blob: Blob;
+  try {
+    blob = await client.get<any, Blob>(url, { params, responseType: "blob", timeout: 0 });
+  } catch (error) {
+    // Error responses arrive as a blob too; unwrap the JSON message
+    throw error instanceof Blob ? JSON.parse(await error.text()) : error;
+  }
+  // Business errors are returned as JSON with HTTP 200
+  if (blob.type.includes("application/json")) {
+    const result = JSON.parse(await blob.text());
+    throw new Error(result.message || "下载失败");
+  }
+
+  const href = URL.createObjectURL(blob);
+  const link = document.createElement("a");
+  link.href = href;
+  link.download = fileName;
+  document.body.appendChild(link);
+  link.click();
+  link.remove();
+  URL.revokeObjectURL(href);
+};
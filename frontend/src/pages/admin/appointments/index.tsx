@@ -18,6 +18,8 @@ import type { Department } from "@/services/department";
 import { Search, Download, FileText } from "lucide-react";
 import { format, subDays, parseISO } from "date-fns";
 import { Badge } from "@/components/ui/badge";
+import { toast } from "sonner";
+import { downloadFile } from "@/api/download";
 
 const AppointmentManagement = () => {
   const [appointments, setAppointments] = useState<Appointment[]>([]);
@@ -74,14 +76,22 @@ const AppointmentManagement = () => {
     }
   };
 
-  const handleExport = () => {
-    window.location.href = `/api/admin/appointment/export?startDate=${startDate}&endDate=${endDate}`;
+  const handleExport = async () => {
+    try {
+      await downloadFile("/admin/appointment/export", `预约记录_${endDate}.xlsx`, { startDate, endDate });
+    } catch (error: any) {
+      toast.error(error.message || "导出失败");
+    }
   };
 
-  const handleGenerateReport = () => {
+  const handleGenerateReport = async () => {
      // Generate monthly report for current month
      const month = format(new Date(), "yyyy-MM");
-     window.location.href = `/api/admin/report/monthly?month=${month}`;
+     try {
+       await downloadFile("/admin/report/monthly", `月度统计报告_${month}.pdf`, { month });
+     } catch (error: any) {
+       toast.error(error.message || "报告生成失败");
+     }
   };
 
   return (
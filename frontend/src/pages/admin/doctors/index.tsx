@@ -23,6 +23,8 @@ import type { Doctor } from "@/services/doctor";
 import { Search, Plus, Pencil, FileUp } from "lucide-react";
 import { departmentService } from "@/services/department";
 import type { Department } from "@/services/department";
+import { importJobService } from "@/services/importJob";
+import { toast } from "sonner";
 
 const DoctorManagement = () => {
   const [doctors, setDoctors] = useState<Doctor[]>([]);
@@ -104,13 +106,40 @@ const DoctorManagement = () => {
     }
   };
 
+  const handleImport = async (e: React.ChangeEvent<HTMLInputElement>) => {
+    const file = e.target.files?.[0];
+    if (!file) return;
+    e.target.value = "";
+
+    const toastId = toast.loading(`正在导入 ${file.name}...`);
+    try {
+      const job = await importJobService.run("doctor", file, (progress) => {
+        toast.loading(`${progress.status}：${file.name}`, { id: toastId });
+      });
+      if (job.status === "已完成" && job.result) {
+        toast.success(`导入完成：成功 ${job.result.success} 条，失败 ${job.result.failed} 条`, { id: toastId });
+        fetchDoctors();
+      } else {
+        toast.error(job.message || "导入失败", { id: toastId });
+      }
+    } catch (error: any) {
+      toast.error(error.message || "导入请求失败", { id: toastId });
+    }
+  };
+
   return (
     <div className="space-y-6">
       <div className="flex justify-between items-center">
         <h2 className="text-2xl font-bold tracking-tight">医生管理</h2>
         <div className="flex gap-2">
-          <Button variant="outline">
+          <Button variant="outline" className="relative cursor-pointer">
             <FileUp className="mr-2 h-4 w-4" /> 批量导入
+            <input 
+              type="file" 
+              className="absolute inset-0 opacity-0 cursor-pointer" 
+              accept=".xlsx, .xls"
+              onChange={handleImport}
+            />
           </Button>
           <Button onClick={handleCreate}>
             <Plus className="mr-2 h-4 w-4" /> 添加医生
@@ -5,6 +5,8 @@ import { Input } from "@/components/ui/input";
 import { Label } from "@/components/ui/label";
 import { FileText, Download, Calendar, TrendingUp, Users, Building2 } from "lucide-react";
 import { format, subMonths, subDays } from "date-fns";
+import { toast } from "sonner";
+import { downloadFile } from "@/api/download";
 import { 
   LineChart, 
   Line, 
@@ -94,14 +96,22 @@ const ReportCenter = () => {
     }
   };
 
-  const handleExportMonthlyReport = () => {
-    window.location.href = `/api/admin/report/monthly?month=${selectedMonth}`;
+  const handleExportMonthlyReport = async () => {
+    try {
+      await downloadFile("/admin/report/monthly", `月度统计报告_${selectedMonth}.pdf`, { month: selectedMonth });
+    } catch (error: any) {
+      toast.error(error.message || "报告生成失败");
+    }
   };
 
-  const handleExportAppointments = () => {
+  const handleExportAppointments = async () => {
     const startDate = format(subMonths(new Date(), 1), "yyyy-MM-dd");
     const endDate = format(new Date(), "yyyy-MM-dd");
-    window.location.href = `/api/admin/appointment/export?startDate=${startDate}&endDate=${endDate}`;
+    try {
+      await downloadFile("/admin/appointment/export", `预约记录_${endDate}.xlsx`, { startDate, endDate });
+    } catch (error: any) {
+      toast.error(error.message || "导出失败");
+    }
   };
 
   return (
@@ -25,7 +25,8 @@ import type { Doctor } from "@/services/doctor";
 import { Search, Plus, Trash2, FileUp, Download } from "lucide-react";
 import { format, addDays } from "date-fns";
 import { toast } from "sonner";
-import client from "@/api/client";
+import { importJobService } from "@/services/importJob";
+import { downloadFile } from "@/api/download";
 
 const ScheduleManagement = () => {
   const [schedules, setSchedules] = useState<Schedule[]>([]);
@@ -109,34 +110,34 @@ const ScheduleManagement = () => {
     }
   };
 
-  const handleExportTemplate = () => {
-    window.location.href = "/api/admin/template/schedule";
+  const handleExportTemplate = async () => {
+    try {
+      await downloadFile("/admin/template/schedule", "排班导入模板.xlsx");
+    } catch (error: any) {
+      toast.error(error.message || "下载失败");
+    }
   };
   
   const handleImport = async (e: React.ChangeEvent<HTMLInputElement>) => {
     const file = e.target.files?.[0];
     if (!file) return;
+    // Reset input so the same file can be selected again
+    e.target.value = "";
 
-    const formData = new FormData();
-    formData.append("file", file);
-
+    const toastId = toast.loading(`正在导入 ${file.name}...`);
     try {
-      // Direct axios call for file upload
-      const res = await client.post("/admin/schedule/import", formData, {
-        headers: { "Content-Type": "multipart/form-data" }
+      // The server imports in the background; poll the job until it finishes
+      const job = await importJobService.run("schedule", file, (progress) => {
+        toast.loading(`${progress.status}：${file.name}`, { id: toastId });
       });
-      const result = res as any;
-      if (result.code === 200) {
-        toast.success(`导入成功：成功 ${result.data.success} 条，失败 ${result.data.failed} 条`);
+      if (job.status === "已完成" && job.result) {
+        toast.success(`导入完成：成功 ${job.result.success} 条，失败 ${job.result.failed} 条`, { id: toastId });
         fetchSchedules();
       } else {
-        toast.error(result.message || "导入失败");
+        toast.error(job.message || "导入失败", { id: toastId });
       }
-    } catch (error) {
-      toast.error("导入请求失败");
-    } finally {
-       // Reset input
-       e.target.value = "";
+    } catch (error: any) {
+      toast.error(error.message || "导入请求失败", { id: toastId });
     }
   };
 
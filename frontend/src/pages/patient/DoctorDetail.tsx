@@ -74,7 +74,6 @@ const DoctorDetail = () => {
         const apptDatetime = `${selectedSchedule.workDate}T${selectedSchedule.startTime}`;
         
         const res = await appointmentService.book({
-          patientId: user.userId,
           doctorId: doctorId!,
           scheduleId: selectedSchedule.id,
           apptDatetime: apptDatetime
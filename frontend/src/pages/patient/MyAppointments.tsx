@@ -17,13 +17,13 @@ const MyAppointments = () => {
 
   useEffect(() => {
     if (user?.userId) {
-      fetchAppointments(user.userId);
+      fetchAppointments();
     }
   }, [user]);
 
-  const fetchAppointments = async (patientId: string) => {
+  const fetchAppointments = async () => {
     try {
-      const res = await appointmentService.getMyAppointments(patientId);
+      const res = await appointmentService.getMyAppointments();
       if (res.code === 200) {
         // Sort by date desc
         const sorted = res.data.sort((a, b) => 
@@ -45,7 +45,7 @@ const MyAppointments = () => {
         const res = await appointmentService.cancel(apptId);
         if (res.code === 200) {
           toast.success("预约已取消");
-          fetchAppointments(user!.userId);
+          fetchAppointments();
         } else {
           toast.error(res.message || "取消失败");
         }
@@ -23,7 +23,7 @@ export interface AppointmentPageResponse {
 
 export const appointmentService = {
   // Book an appointment
-  book: (data: { patientId: string; doctorId: string; scheduleId: number; apptDatetime: string }) => {
+  book: (data: { doctorId: string; scheduleId: number; apptDatetime: string }) => {
     return client.post<any, { code: number; message: string; data: Appointment }>("/appointment/book", data);
   },
 
@@ -38,8 +38,8 @@ export const appointmentService = {
   },
 
   // Get my appointments (Patient)
-  getMyAppointments: (patientId: string) => {
-    return client.get<any, { code: number; data: Appointment[] }>("/appointment/my", { params: { patientId } });
+  getMyAppointments: () => {
+    return client.get<any, { code: number; data: Appointment[] }>("/appointment/my");
   },
 
   // Admin/Doctor: Get appointment page
@@ -0,0 +1,62 @@
+import client from "@/api/client";
+
+export type ImportType = "doctor" | "schedule";
+
+export interface ImportResult {
+  total: number;
+  success: number;
+  failed: number;
+  errors: { rowNum: number; message: string }[];
+}
+
+export interface ImportJob {
+  jobId: string;
+  type: string;
+  fileName: string;
+  status: "等待中" | "导入中" | "已完成" | "失败";
+  message?: string;
+  result?: ImportResult;
+  createdAt: string;
+  finishedAt?: string;
+  finished: boolean;
+}
+
+const POLL_INTERVAL_MS = 1000;
+
+const sleep = (ms: number) => new Promise((resolve) => setTimeout(resolve, ms));
+
+export const importJobService = {
+  // Admin only: upload the Excel file, the server imports it in the background
+  submit: (type: ImportType, file: File) => {
+    const formData = new FormData();
+    formData.append("file", file);
+    return client.post<any, { code: number; message?: string; data: ImportJob }>(
+      `/admin/${type}/import/async`,
+      formData,
+      { headers: { "Content-Type": "multipart/form-data" } }
+    );
+  },
+
+  getJob: (jobId: string) => {
+    return client.get<any, { code: number; message?: string; data: ImportJob }>(`/admin/import/jobs/${jobId}`);
+  },
+
+  // Submit and poll until the job finishes; onProgress receives every intermediate state
+  run: async (type: ImportType, file: File, onProgress?: (job: ImportJob) => void) => {
+    const submitted = await importJobService.submit(type, file);
+    if (submitted.code !== 200) {
+      throw new Error(submitted.message || "导入失败");
+    }
+    let job = submitted.data;
+    while (!job.finished) {
+      onProgress?.(job);
+      await sleep(POLL_INTERVAL_MS);
+      const res = await importJobService.getJob(job.jobId);
+      if (res.code !== 200) {
+        throw new Error(res.message || "查询导入进度失败");
+      }
+      job = res.data;
+    }
+    return job;
+  }
+};
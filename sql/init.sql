@@ -96,10 +96,10 @@ CREATE TABLE appointment (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     INDEX idx_appt_id (appt_id),
     INDEX idx_patient_id (patient_id),
-    INDEX idx_doctor_id (doctor_id),
     INDEX idx_schedule_id (schedule_id),
     INDEX idx_appt_datetime (appt_datetime),
-    INDEX idx_status (status),
+    INDEX idx_status_datetime (status, appt_datetime),
+    INDEX idx_doctor_datetime (doctor_id, appt_datetime),
     FOREIGN KEY (patient_id) REFERENCES patient(patient_id) ON DELETE CASCADE,
     FOREIGN KEY (doctor_id) REFERENCES doctor(doctor_id) ON DELETE CASCADE,
     FOREIGN KEY (schedule_id) REFERENCES schedule(id) ON DELETE CASCADE
@@ -117,6 +117,31 @@ CREATE TABLE admin (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='管理员表';
 
+-- =====================================================
+-- 7. ID序列表 (IdSequence) - 号段分配器租用序列号
+-- =====================================================
+DROP TABLE IF EXISTS id_sequence;
+CREATE TABLE id_sequence (
+    seq_name VARCHAR(32) PRIMARY KEY COMMENT '序列名称（如 appt:20240101）',
+    next_value BIGINT NOT NULL COMMENT '下一个可分配的序列号',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='ID序列表';
+
+-- =====================================================
+-- 8. 预约日统计表 (AppointmentDailyStats) - 按日/医生/状态预聚合的预约量
+-- =====================================================
+DROP TABLE IF EXISTS appointment_daily_stats;
+CREATE TABLE appointment_daily_stats (
+    stat_date DATE NOT NULL COMMENT '预约日期',
+    doctor_id VARCHAR(8) NOT NULL COMMENT '医生ID',
+    dept_id BIGINT COMMENT '科室ID（医生所属科室）',
+    status VARCHAR(10) NOT NULL COMMENT '状态：已预约/已取消/已完成',
+    cnt INT NOT NULL DEFAULT 0 COMMENT '预约数',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (stat_date, doctor_id, status),
+    INDEX idx_dept_date (dept_id, stat_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='预约日统计表';
+
 -- =====================================================
 -- 初始化数据
 -- =====================================================